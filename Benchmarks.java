@@ -0,0 +1,184 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+// Microbenchmarks for the rules engine hot paths over a fixed suite of positions.
+// Each benchmark is warmed up, then measured in several timed iterations; time per
+// operation and bytes allocated per operation are reported.
+final class Benchmarks {
+    // Fixed position suite: opening, middlegame and endgame
+    static final String[][] POSITIONS = {
+        {"opening", Board.START_FEN},
+        {"middlegame", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"},
+        {"endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"},
+    };
+    // Opening line replayed through ChessGame.makeMove
+    private static final String[][] GAME_LINE = {
+        {"e2", "e4"}, {"e7", "e5"}, {"g1", "f3"}, {"b8", "c6"}, {"f1", "b5"}, {"a7", "a6"}, {"b5", "a4"}, {"g8", "f6"},
+    };
+    // Untrained network of a typical size; evaluation cost does not depend on the weights
+    private static final Nnue NETWORK = Nnue.random(256, 1);
+    private static final String[] PIECE_NAMES = {"Pawn", "Knight", "Bishop", "Rook", "Queen", "King"};
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 300_000_000L;
+
+    interface Op { long run(); }
+
+    // Results are folded into this field so the JIT cannot drop the measured work
+    static volatile long sink;
+
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final String filter;
+
+    private Benchmarks(String filter) { this.filter = filter; }
+
+    // bench [filter]
+    public static void run(String[] args) {
+        Benchmarks bench = new Benchmarks(args.length > 1 ? args[1] : "");
+        System.out.println("Instrumentation " + (Stats.ENABLED ? "on" : "off") + " (-Dchess.stats)");
+        System.out.printf("%-40s %14s %12s %12s%n", "Benchmark", "ns/op", "error", "B/op");
+        // An empty instrumented section: what every probe costs, about nothing when off
+        bench.measure("Stats.probe", () -> {
+            long start = Stats.start();
+            Stats.end(Stats.IS_IN_CHECK, start);
+            return 1;
+        }, 1);
+        for (String[] pos : POSITIONS) bench.positionBenchmarks(pos[0], pos[1]);
+        bench.measure("ChessGame.makeMove:line", () -> {
+            ChessGame game = new ChessGame("White", "Black", NullOutput.STREAM, null);
+            long ok = 0;
+            for (String[] m : GAME_LINE) if (game.makeMove(m[0], m[1])) ok++;
+            return ok;
+        }, GAME_LINE.length);
+        // A hosted request: list a piece's moves, then play one of them
+        bench.measure("ChessGame.legalAndMove:line", () -> {
+            ChessGame game = new ChessGame("White", "Black", NullOutput.STREAM, null);
+            long ok = 0;
+            for (String[] m : GAME_LINE) {
+                game.showLegalMoves(m[0]);
+                if (game.makeMove(m[0], m[1])) ok++;
+            }
+            return ok;
+        }, GAME_LINE.length);
+    }
+
+    private void positionBenchmarks(String name, String fen) {
+        Board board = new Board(fen);
+        Color side = board.getSideToMove();
+        measure("Board.getAllLegalMoves:" + name, () -> board.getAllLegalMoves(side).size(), 1);
+        MoveList moves = new MoveList();
+        measure("Board.generateLegalMoves:" + name, () -> {
+            moves.clear();
+            board.generateLegalMoves(side, moves);
+            return moves.size();
+        }, 1);
+        measure("Board.isInCheck:" + name, () -> board.isInCheck(side) ? 1 : 0, 1);
+        measure("Evaluation.evaluate:" + name, () -> Evaluation.evaluate(board), 1);
+        // Make, evaluate and unmake every legal move: the evaluator's cost at a search node
+        MoveList legal = new MoveList();
+        board.generateLegalMoves(side, legal);
+        measure("Evaluation.makeEvaluate:" + name, () -> {
+            long sum = 0;
+            for (int i = 0; i < legal.size(); i++) {
+                board.makeMove(legal.get(i));
+                sum += Evaluation.evaluate(board);
+                board.unmakeMove();
+            }
+            return sum;
+        }, legal.size());
+        board.setAccumulator(NETWORK.newAccumulator());
+        measure("Nnue.evaluate:" + name, () -> board.getAccumulator().evaluate(board.getSideToMove()), 1);
+        measure("Nnue.makeEvaluate:" + name, () -> {
+            long sum = 0;
+            for (int i = 0; i < legal.size(); i++) {
+                board.makeMove(legal.get(i));
+                sum += board.getAccumulator().evaluate(board.getSideToMove());
+                board.unmakeMove();
+            }
+            return sum;
+        }, legal.size());
+        board.setAccumulator(null);
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            // Every (from, to) pair for this piece type, as the old target scan would ask
+            List<Position[]> pairs = new ArrayList<>();
+            for (long pieces = board.getPieces(side, type); pieces != 0; pieces &= pieces - 1) {
+                Position from = Position.of(Long.numberOfTrailingZeros(pieces));
+                for (int to = 0; to < 64; to++) pairs.add(new Position[] {from, Position.of(to)});
+            }
+            if (pairs.isEmpty()) continue;
+            Position[][] calls = pairs.toArray(new Position[0][]);
+            measure("Piece.isValidMove:" + PIECE_NAMES[type] + ":" + name, () -> {
+                long valid = 0;
+                for (Position[] c : calls) if (board.getPiece(c[0]).isValidMove(c[0], c[1], board)) valid++;
+                return valid;
+            }, calls.length);
+        }
+        measure("Board.displayBoard:" + name, () -> {
+            board.displayBoard(NullOutput.STREAM);
+            return 1;
+        }, 1);
+        BoardRenderer renderer = new BoardRenderer();
+        measure("BoardRenderer.render:" + name, () -> {
+            renderer.render(board, NullOutput.STREAM);
+            return 1;
+        }, 1);
+        // Repaint after a move and after taking it back: two frames of a few changed squares
+        int move = legal.get(0);
+        renderer.repaint(board, NullOutput.STREAM);
+        measure("BoardRenderer.repaint:" + name, () -> {
+            board.makeMove(move);
+            board.setLastMove(move);
+            renderer.repaint(board, NullOutput.STREAM);
+            board.unmakeMove();
+            board.setLastMove(0);
+            renderer.repaint(board, NullOutput.STREAM);
+            return 1;
+        }, 2);
+    }
+
+    // Runs op repeatedly; callsPerOp divides the results when one op covers several calls
+    private void measure(String name, Op op, int callsPerOp) {
+        if (!name.contains(filter)) return;
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) iteration(op);
+        double[] nsPerCall = new double[MEASURE_ITERATIONS];
+        long totalOps = 0, totalBytes = 0;
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long ops = iteration(op);
+            long elapsed = System.nanoTime() - start;
+            totalBytes += threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            totalOps += ops;
+            nsPerCall[i] = (double) elapsed / ops / callsPerOp;
+        }
+        double mean = 0;
+        for (double v : nsPerCall) mean += v;
+        mean /= MEASURE_ITERATIONS;
+        double var = 0;
+        for (double v : nsPerCall) var += (v - mean) * (v - mean);
+        double error = Math.sqrt(var / (MEASURE_ITERATIONS - 1));
+        System.out.printf("%-40s %14.2f %12.2f %12.1f%n", name, mean, error, (double) totalBytes / totalOps / callsPerOp);
+    }
+
+    private static long iteration(Op op) {
+        long deadline = System.nanoTime() + ITERATION_NANOS;
+        long ops = 0, acc = 0;
+        do {
+            for (int i = 0; i < 64; i++) acc += op.run();
+            ops += 64;
+        } while (System.nanoTime() < deadline);
+        sink = acc;
+        return ops;
+    }
+
+    // Discards everything written to it, so rendering cost is measured without terminal I/O
+    private static final class NullOutput extends OutputStream {
+        static final PrintStream STREAM = new PrintStream(new NullOutput());
+        @Override public void write(int b) {}
+        @Override public void write(byte[] b, int off, int len) {}
+    }
+}
@@ -0,0 +1,21 @@
+// Bishop
+class Bishop extends Piece {
+    public Bishop(Color color, Position pos) { super(color, pos); }
+    @Override
+    public void generateMoves(int from, Board board, MoveList moves) {
+        addTargets(from, Bitboards.bishopAttacks(from, board.getOccupied()), board, moves);
+    }
+    @Override
+    protected boolean matchesMovePattern(Position from, Position to, Board board) {
+        int r = Math.abs(to.getRow() - from.getRow());
+        int c = Math.abs(to.getCol() - from.getCol());
+        if (r != c) return false;
+        return isPathClear(from, to, board);
+    }
+    @Override
+    public String getSymbol() {
+        return color == Color.WHITE ? "B" : "b";
+    }
+    @Override
+    public int getType() { return BISHOP; }
+}
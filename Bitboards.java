@@ -0,0 +1,162 @@
+// Precomputed attack tables for the bitboard board representation.
+// Squares are indexed row * 8 + col, matching Position (a8 = 0, h1 = 63).
+final class Bitboards {
+    private Bitboards() {}
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    // Magic bitboards for sliding pieces
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    // Magic multipliers, found offline with a fixed-seed sparse random search
+    private static final long[] ROOK_MAGICS = {
+        0x2080002080400010L, 0x00C0002001401000L, 0x2100110008402002L, 0x0880080081041000L,
+        0x0200020020041008L, 0x2300040008010012L, 0x0C00283004008201L, 0x0180010000407A80L,
+        0x0168800080400020L, 0x0010400040201000L, 0x1001002001001048L, 0x1001002408100100L,
+        0x0801000408010012L, 0x4001000209000400L, 0x08A20004C8020001L, 0x2002801145002280L,
+        0x0080860021004200L, 0x001000C009402002L, 0x00B0002004002800L, 0x100A808010020800L,
+        0x9400808004000800L, 0x0090808004000200L, 0x0000040010810208L, 0x2000020000448534L,
+        0x4104400480008033L, 0x0000810100204000L, 0x0440430900200010L, 0x4600240900100100L,
+        0x0804080100110004L, 0x0001000300080400L, 0x0004084400011002L, 0x0023040200008041L,
+        0x0580050043002080L, 0x0400804002802008L, 0x0001002001004010L, 0x0080200A02001040L,
+        0x600D480280802400L, 0x400B800201800C00L, 0x2408211004004208L, 0x0200211082000844L,
+        0x0020804010208000L, 0x5030004020104000L, 0xA042084080220010L, 0x4088080010008080L,
+        0x5002080100110004L, 0x2012002010040400L, 0x0040318210440008L, 0x0120941040820001L,
+        0x1000800100402100L, 0x0040002010004840L, 0x8108450020001900L, 0x0200204008120200L,
+        0x0080800C00180180L, 0x0885000400420900L, 0x230802011008C400L, 0x3801740891432200L,
+        0x0A00250212024082L, 0x0000882040001105L, 0x0042102082000A42L, 0xC401210810000501L,
+        0x0241001002480005L, 0x0081000400880241L, 0x0000009008024124L, 0x0048122980410402L
+    };
+    private static final long[] BISHOP_MAGICS = {
+        0x1862221006220044L, 0x2104A14202020060L, 0x2804081220444001L, 0x2102408900010001L,
+        0x0002021000040002L, 0x08C3100805004300L, 0x1084040124920050L, 0x8900440043382010L,
+        0x2401410802140040L, 0x0901200454208020L, 0x0000090216020541L, 0x1283844040800804L,
+        0x0521840420000803L, 0x0800010402400C40L, 0x0000408E10100404L, 0x0009810048420800L,
+        0x2004211004286808L, 0x13080A1001380080L, 0x0008801004220020L, 0x0024000802480800L,
+        0x1461001190400401L, 0x0020400200500440L, 0x0003000409019000L, 0x000C20820D011802L,
+        0x000804002164100CL, 0x00048400A0011404L, 0x5018110308044100L, 0x0048A00804010020L,
+        0x0007840000802000L, 0x8808A20075004220L, 0x8014040000822100L, 0x110C03000E251101L,
+        0x0081094820202010L, 0x0008041000044100L, 0x00C1202808940800L, 0x8108100821040400L,
+        0x1240010010010041L, 0x0810004080011000L, 0x00A20C0401804A00L, 0x40014C0020050500L,
+        0x5805082012042480L, 0x2004022144031000L, 0x2082002024204808L, 0x0800004200800800L,
+        0x0410020204100A02L, 0x80C1204080804101L, 0x0010104E01800042L, 0x000800810C400208L,
+        0x100080B008201210L, 0x8000440605112101L, 0x000202008C440040L, 0x9004002210442200L,
+        0x2032014088222045L, 0x0C00202222C20000L, 0x0140040820A50100L, 0x0222104C29024018L,
+        0x0200110121202004L, 0x0800104200B00802L, 0x0000401424020801L, 0x4000000004208840L,
+        0x0802E00040104100L, 0x03000020A0424080L, 0x0011C00408188121L, 0x0848020822040013L
+    };
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    private static final int[][] ROOK_DIRS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final int[][] BISHOP_DIRS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+
+    static {
+        int[][] knightSteps = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+        for (int sq = 0; sq < 64; sq++) {
+            int r = sq >> 3, c = sq & 7;
+            for (int[] s : knightSteps) KNIGHT_ATTACKS[sq] |= bit(r + s[0], c + s[1]);
+            for (int dr = -1; dr <= 1; dr++)
+                for (int dc = -1; dc <= 1; dc++)
+                    if (dr != 0 || dc != 0) KING_ATTACKS[sq] |= bit(r + dr, c + dc);
+            // White pawns move towards row 0, black pawns towards row 7
+            PAWN_ATTACKS[0][sq] = bit(r - 1, c - 1) | bit(r - 1, c + 1);
+            PAWN_ATTACKS[1][sq] = bit(r + 1, c - 1) | bit(r + 1, c + 1);
+        }
+        for (int from = 0; from < 64; from++) {
+            for (int[][] dirs : new int[][][] {ROOK_DIRS, BISHOP_DIRS}) {
+                for (int[] d : dirs) {
+                    long ray = 0L;
+                    int r = (from >> 3) + d[0], c = (from & 7) + d[1];
+                    while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                        BETWEEN[from][r * 8 + c] = ray;
+                        ray |= 1L << (r * 8 + c);
+                        r += d[0]; c += d[1];
+                    }
+                    // Whole line through from in this direction, both ways
+                    long line = ray | (1L << from) | slowAttacks(from, 0L, new int[][] {{-d[0], -d[1]}});
+                    for (long t = ray; t != 0; t &= t - 1) LINE[from][Long.numberOfTrailingZeros(t)] = line;
+                }
+            }
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            initMagic(sq, ROOK_DIRS, ROOK_MASKS, ROOK_MAGICS[sq], ROOK_SHIFTS, ROOK_TABLE);
+            initMagic(sq, BISHOP_DIRS, BISHOP_MASKS, BISHOP_MAGICS[sq], BISHOP_SHIFTS, BISHOP_TABLE);
+        }
+    }
+
+    private static long bit(int r, int c) {
+        return (r >= 0 && r < 8 && c >= 0 && c < 8) ? 1L << (r * 8 + c) : 0L;
+    }
+
+    // Ray attacks computed square by square; only used to fill the magic tables.
+    private static long slowAttacks(int sq, long occ, int[][] dirs) {
+        long attacks = 0L;
+        for (int[] d : dirs) {
+            int r = (sq >> 3) + d[0], c = (sq & 7) + d[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                long b = 1L << (r * 8 + c);
+                attacks |= b;
+                if ((occ & b) != 0) break;
+                r += d[0]; c += d[1];
+            }
+        }
+        return attacks;
+    }
+
+    // Relevant occupancy: every ray square except the last one before the edge
+    private static long relevantMask(int sq, int[][] dirs) {
+        long mask = 0L;
+        for (int[] d : dirs) {
+            int r = (sq >> 3) + d[0], c = (sq & 7) + d[1];
+            while (r + d[0] >= 0 && r + d[0] < 8 && c + d[1] >= 0 && c + d[1] < 8) {
+                mask |= 1L << (r * 8 + c);
+                r += d[0]; c += d[1];
+            }
+        }
+        return mask;
+    }
+
+    // Fills the attack table of one square for every subset of its relevant occupancy
+    private static void initMagic(int sq, int[][] dirs, long[] masks, long magic, int[] shifts, long[][] tables) {
+        long mask = relevantMask(sq, dirs);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+        long subset = 0L;
+        do {
+            table[(int) ((subset * magic) >>> (64 - bits))] = slowAttacks(sq, subset, dirs);
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+        masks[sq] = mask;
+        shifts[sq] = 64 - bits;
+        tables[sq] = table;
+    }
+
+    public static long rookAttacks(int sq, long occ) {
+        return ROOK_TABLE[sq][(int) (((occ & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+    }
+
+    public static long bishopAttacks(int sq, long occ) {
+        return BISHOP_TABLE[sq][(int) (((occ & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+    }
+
+    public static long queenAttacks(int sq, long occ) {
+        return rookAttacks(sq, occ) | bishopAttacks(sq, occ);
+    }
+
+    // Full rank, file or diagonal through two aligned squares, including both; 0 otherwise
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    // Squares strictly between two squares on a shared rank, file or diagonal; 0 otherwise
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+}
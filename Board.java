@@ -0,0 +1,585 @@
+import java.io.PrintStream;
+import java.util.*;
+
+// Board
+// Pieces live in a 64-square mailbox for the Piece API, mirrored by one bitboard per
+// piece type and color plus occupancy masks used for attack and move queries.
+class Board {
+    private final Piece[] squares = new Piece[64];
+    private final long[] pieceBB = new long[12];   // index: color * 6 + type
+    private final long[] colorBB = new long[2];
+    private long occupied;
+    private final int[] kingSquare = {-1, -1};  // per color, kept current by put()
+    private int lastMove;                       // packed move to highlight, 0 for none
+    private final MoveList legalBuffer = new MoveList();
+
+    // Game state needed to make and unmake moves
+    public static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2, BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+    private static final int[] CASTLING_MASK = new int[64];
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[60] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[63] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[56] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[4] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[7] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[0] &= ~BLACK_QUEENSIDE;
+    }
+    private Color sideToMove = Color.WHITE;
+    private int castlingRights = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+    private int enPassantSquare = -1;    // square passed over by a double push, if it can be captured
+    private int halfmoveClock = 0;
+    private int fullmoveNumber = 1;
+    private long hash;                   // Zobrist key, updated incrementally
+    private int mgScore, egScore, phase; // Evaluation totals, White minus Black, updated incrementally
+    private Nnue.Accumulator accumulator; // network inputs kept current by put()/clear(), if attached
+
+    // Undo stack: one packed state word plus the pieces involved, per move made
+    private int ply = 0;
+    private int[] undoMove = new int[256];
+    private int[] undoState = new int[256];  // castling | (ep + 1) << 4 | hadMoved << 11 | halfmove << 12
+    private Piece[] undoMoved = new Piece[256];
+    private Piece[] undoCaptured = new Piece[256];
+    private long[] undoHash = new long[256];
+
+    // ANSI escape codes
+    public static final String RESET = "\u001B[0m";
+    public static final String WHITE_PIECE = "\u001B[97m";   // bright white
+    public static final String BLACK_PIECE = "\u001B[33m";   // yellow
+    public static final String BG_LIGHT = "\u001B[47m";      // light square
+    public static final String BG_DARK = "\u001B[40m";       // dark square
+    public static final String BG_HIGHLIGHT = "\u001B[42m";  // green
+    public static final String BG_LAST_MOVE = "\u001B[44m";  // blue
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final int MAX_FEN_COUNTER = 65535;   // largest halfmove clock or fullmove number loadFen accepts
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    public Board() { initializeBoard(); hash = computeHash(); }
+    public Board(String fen) { loadFen(fen); }
+
+    // Independent copy with its own Piece objects, e.g. for another thread. The copy keeps the hashes
+    // of the reversible moves that led here for repetition detection, but cannot unmake those moves.
+    public Board copy() { return new Board(this); }
+
+    private Board(Board other) {
+        for (int sq = 0; sq < 64; sq++) {
+            Piece p = other.squares[sq];
+            if (p == null) continue;
+            Piece q = Piece.create(p.getType(), p.getColor(), p.getPosition());
+            q.hasMoved = p.hasMoved;
+            put(q, sq);
+        }
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        lastMove = other.lastMove;
+        hash = other.hash;
+        ply = Math.min(other.ply, other.halfmoveClock);
+        if (ply > undoHash.length) growUndoStack(ply);
+        System.arraycopy(other.undoHash, other.ply - ply, undoHash, 0, ply);
+    }
+
+    // Replaces the whole position with the one described by a FEN string
+    public void loadFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        Arrays.fill(squares, null);
+        Arrays.fill(pieceBB, 0L);
+        Arrays.fill(colorBB, 0L);
+        Arrays.fill(kingSquare, -1);
+        occupied = 0L;
+        mgScore = egScore = phase = 0;
+        if (accumulator != null) accumulator.reset();
+        ply = 0;
+        lastMove = 0;
+        // Eight ranks of exactly eight squares each, so no piece can spill onto the next rank
+        String[] ranks = fields[0].split("/", -1);
+        if (ranks.length != 8) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        for (int row = 0; row < 8; row++) {
+            int col = 0;
+            boolean afterDigit = false;
+            for (char c : ranks[row].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    if (afterDigit) throw new IllegalArgumentException("Invalid FEN: " + fen);   // "44" is not FEN
+                    col += c - '0';
+                    afterDigit = true;
+                    continue;
+                }
+                afterDigit = false;
+                int type = PIECE_LETTERS.indexOf(Character.toUpperCase(c));
+                if (type < 0 || col >= 8) throw new IllegalArgumentException("Invalid FEN: " + fen);
+                Color color = Character.isUpperCase(c) ? Color.WHITE : Color.BLACK;
+                int sq = row * 8 + col++;
+                Piece p = Piece.create(type, color, Position.of(sq));
+                // Pawns off their home rank have moved; everything else is tracked by castling rights
+                p.hasMoved = type == Piece.PAWN && row != (color == Color.WHITE ? 6 : 1);
+                put(p, sq);
+            }
+            if (col != 8) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        if (!fields[1].equals("w") && !fields[1].equals("b")) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        sideToMove = fields[1].equals("w") ? Color.WHITE : Color.BLACK;
+        castlingRights = 0;
+        if (!fields[2].equals("-")) {
+            for (char c : fields[2].toCharArray()) {
+                int i = "KQkq".indexOf(c);
+                if (i < 0 || (castlingRights & 1 << i) != 0) throw new IllegalArgumentException("Invalid FEN: " + fen);
+                castlingRights |= 1 << i;
+            }
+        }
+        enPassantSquare = -1;
+        if (!fields[3].equals("-")) {
+            Position ep = new Position(fields[3]);
+            if (!ep.isValid()) throw new IllegalArgumentException("Invalid FEN: " + fen);
+            // Only keep the square if a pawn can actually capture there
+            Color them = sideToMove.opposite();
+            if ((Bitboards.PAWN_ATTACKS[them.ordinal()][ep.getSquare()] & pieceBB[sideToMove.ordinal() * 6 + Piece.PAWN]) != 0)
+                enPassantSquare = ep.getSquare();
+        }
+        halfmoveClock = fields.length > 4 ? counter(fields[4], 0, fen) : 0;
+        fullmoveNumber = fields.length > 5 ? counter(fields[5], 1, fen) : 1;
+        hash = computeHash();
+    }
+
+    // A halfmove clock or fullmove number field. The limit keeps the clock well inside its 20 bits
+    // of the undo state, however long the game goes on afterwards.
+    private static int counter(String field, int min, String fen) {
+        try {
+            int value = Integer.parseInt(field);
+            if (value >= min && value <= MAX_FEN_COUNTER) return value;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid FEN: " + fen);
+    }
+
+    // FEN for the current position. The en passant square is only written when a capture there is possible.
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                Piece p = squares[row * 8 + col];
+                if (p == null) { empty++; continue; }
+                if (empty > 0) { sb.append(empty); empty = 0; }
+                char c = PIECE_LETTERS.charAt(p.getType());
+                sb.append(p.getColor() == Color.WHITE ? c : Character.toLowerCase(c));
+            }
+            if (empty > 0) sb.append(empty);
+            if (row < 7) sb.append('/');
+        }
+        sb.append(sideToMove == Color.WHITE ? " w " : " b ");
+        if (castlingRights == 0) sb.append('-');
+        for (int i = 0; i < 4; i++) if ((castlingRights & 1 << i) != 0) sb.append("KQkq".charAt(i));
+        sb.append(' ').append(enPassantSquare < 0 ? "-" : Position.of(enPassantSquare).toString());
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    // Null if the position could arise in a game as far as cheap checks tell, else the reason it cannot
+    public String validatePosition() {
+        for (Color c : Color.values())
+            if (Long.bitCount(getPieces(c, Piece.KING)) != 1) return "need exactly one " + c + " king";
+        // Material no game can reach; it also keeps move generation within MoveList.CAPACITY
+        for (Color c : Color.values()) {
+            int pawns = Long.bitCount(getPieces(c, Piece.PAWN));
+            int promoted = Math.max(0, Long.bitCount(getPieces(c, Piece.KNIGHT)) - 2)
+                + Math.max(0, Long.bitCount(getPieces(c, Piece.BISHOP)) - 2)
+                + Math.max(0, Long.bitCount(getPieces(c, Piece.ROOK)) - 2)
+                + Math.max(0, Long.bitCount(getPieces(c, Piece.QUEEN)) - 1);
+            if (Long.bitCount(getOccupancy(c)) > 16 || pawns > 8 || pawns + promoted > 8)
+                return "too many pieces for " + c;
+        }
+        long backRanks = 0xFFL | 0xFFL << 56;
+        if (((getPieces(Color.WHITE, Piece.PAWN) | getPieces(Color.BLACK, Piece.PAWN)) & backRanks) != 0)
+            return "pawn on the first or last rank";
+        if (isInCheck(sideToMove.opposite())) return "side not to move is in check";
+        int[][] castling = {   // right, king square, rook square
+            {WHITE_KINGSIDE, 60, 63}, {WHITE_QUEENSIDE, 60, 56},
+            {BLACK_KINGSIDE, 4, 7}, {BLACK_QUEENSIDE, 4, 0},
+        };
+        for (int[] c : castling) {
+            if ((castlingRights & c[0]) == 0) continue;
+            Piece king = squares[c[1]], rook = squares[c[2]];
+            Color color = c[1] == 60 ? Color.WHITE : Color.BLACK;
+            if (king == null || king.getType() != Piece.KING || king.getColor() != color
+                    || rook == null || rook.getType() != Piece.ROOK || rook.getColor() != color)
+                return "castling right without king and rook on their squares";
+        }
+        return null;
+    }
+
+    // Full Zobrist key from scratch; make/unmake keep it up to date incrementally
+    private long computeHash() {
+        long h = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            Piece p = squares[sq];
+            if (p != null) h ^= Zobrist.PIECES[p.getColor().ordinal() * 6 + p.getType()][sq];
+        }
+        if (sideToMove == Color.BLACK) h ^= Zobrist.SIDE;
+        h ^= Zobrist.CASTLING[castlingRights];
+        if (enPassantSquare >= 0) h ^= Zobrist.EN_PASSANT_FILE[enPassantSquare & 7];
+        return h;
+    }
+
+    private void initializeBoard() {
+        for (int col = 0; col < 8; col++) {
+            put(new Pawn(Color.BLACK, Position.of(8 + col)), 8 + col);
+            put(new Pawn(Color.WHITE, Position.of(48 + col)), 48 + col);
+        }
+        Piece[] blacks = {
+            new Rook(Color.BLACK,new Position(0,0)), new Knight(Color.BLACK,new Position(0,1)),
+            new Bishop(Color.BLACK,new Position(0,2)), new Queen(Color.BLACK,new Position(0,3)),
+            new King(Color.BLACK,new Position(0,4)), new Bishop(Color.BLACK,new Position(0,5)),
+            new Knight(Color.BLACK,new Position(0,6)), new Rook(Color.BLACK,new Position(0,7))
+        };
+        Piece[] whites = {
+            new Rook(Color.WHITE,new Position(7,0)), new Knight(Color.WHITE,new Position(7,1)),
+            new Bishop(Color.WHITE,new Position(7,2)), new Queen(Color.WHITE,new Position(7,3)),
+            new King(Color.WHITE,new Position(7,4)), new Bishop(Color.WHITE,new Position(7,5)),
+            new Knight(Color.WHITE,new Position(7,6)), new Rook(Color.WHITE,new Position(7,7))
+        };
+        for (int i=0;i<8;i++){ put(blacks[i], i); put(whites[i], 56 + i); }
+    }
+
+    // Low-level placement: keeps mailbox and bitboards in sync, never touches Piece state
+    private void put(Piece piece, int sq) {
+        long b = 1L << sq;
+        int index = piece.getColor().ordinal() * 6 + piece.getType();
+        squares[sq] = piece;
+        pieceBB[index] |= b;
+        if (piece.getType() == Piece.KING) kingSquare[piece.getColor().ordinal()] = sq;
+        hash ^= Zobrist.PIECES[index][sq];
+        mgScore += Evaluation.MG[index][sq];
+        egScore += Evaluation.EG[index][sq];
+        phase += Evaluation.PHASE[piece.getType()];
+        if (accumulator != null) accumulator.add(index, sq);
+        colorBB[piece.getColor().ordinal()] |= b;
+        occupied |= b;
+    }
+
+    private Piece clear(int sq) {
+        Piece piece = squares[sq];
+        if (piece == null) return null;
+        long b = ~(1L << sq);
+        int index = piece.getColor().ordinal() * 6 + piece.getType();
+        squares[sq] = null;
+        pieceBB[index] &= b;
+        hash ^= Zobrist.PIECES[index][sq];
+        mgScore -= Evaluation.MG[index][sq];
+        egScore -= Evaluation.EG[index][sq];
+        phase -= Evaluation.PHASE[piece.getType()];
+        if (accumulator != null) accumulator.remove(index, sq);
+        colorBB[piece.getColor().ordinal()] &= b;
+        occupied &= b;
+        return piece;
+    }
+
+    public Piece getPiece(Position p){ return p.isValid()? squares[p.getSquare()] : null; }
+    public Piece getPiece(int sq){ return squares[sq]; }
+    public void setPiece(Position p, Piece piece){
+        if(!p.isValid()) return;
+        clear(p.getSquare());
+        if(piece!=null) { put(piece, p.getSquare()); piece.setPosition(p); }
+    }
+    public void removePiece(Position p){ if(p.isValid()) clear(p.getSquare()); }
+    public void setLastMove(int move){ lastMove = move; }
+    public int getLastMove(){ return lastMove; }
+
+    public Color getSideToMove(){ return sideToMove; }
+    public int getEnPassantSquare(){ return enPassantSquare; }
+    public int getCastlingRights(){ return castlingRights; }
+    public boolean hasCastlingRight(Color color, boolean kingside){
+        int right = kingside ? WHITE_KINGSIDE : WHITE_QUEENSIDE;
+        return (castlingRights & (color == Color.WHITE ? right : right << 2)) != 0;
+    }
+    public int getHalfmoveClock(){ return halfmoveClock; }
+    public int getFullmoveNumber(){ return fullmoveNumber; }
+    public int getPly(){ return ply; }
+    public long getHash(){ return hash; }
+    public int getMidgameScore(){ return mgScore; }
+    public int getEndgameScore(){ return egScore; }
+    public int getPhase(){ return phase; }
+
+    // Keeps the accumulator in step with every later change to the board; null detaches it
+    public void setAccumulator(Nnue.Accumulator acc){
+        accumulator = acc;
+        if (acc == null) return;
+        acc.reset();
+        for (long b = occupied; b != 0; b &= b - 1) {
+            int sq = Long.numberOfTrailingZeros(b);
+            acc.add(squares[sq].getColor().ordinal() * 6 + squares[sq].getType(), sq);
+        }
+    }
+    public Nnue.Accumulator getAccumulator(){ return accumulator; }
+
+    public long getPieces(Color color, int type){ return pieceBB[color.ordinal() * 6 + type]; }
+    public long getOccupancy(Color color){ return colorBB[color.ordinal()]; }
+    public long getOccupied(){ return occupied; }
+
+    public void displayBoard() { displayBoard(System.out); }
+
+    // One-off drawing; games keep a BoardRenderer to reuse its buffer and repaint differentially
+    public void displayBoard(PrintStream out) { new BoardRenderer().render(this, out); }
+
+    // True if any piece of the given color attacks the square, looked up from the square outwards
+    public boolean isSquareAttacked(int sq, Color by){
+        int base = by.ordinal() * 6;
+        if ((Bitboards.PAWN_ATTACKS[by.opposite().ordinal()][sq] & pieceBB[base + Piece.PAWN]) != 0) return true;
+        if ((Bitboards.KNIGHT_ATTACKS[sq] & pieceBB[base + Piece.KNIGHT]) != 0) return true;
+        if ((Bitboards.KING_ATTACKS[sq] & pieceBB[base + Piece.KING]) != 0) return true;
+        long queens = pieceBB[base + Piece.QUEEN];
+        if ((Bitboards.rookAttacks(sq, occupied) & (pieceBB[base + Piece.ROOK] | queens)) != 0) return true;
+        return (Bitboards.bishopAttacks(sq, occupied) & (pieceBB[base + Piece.BISHOP] | queens)) != 0;
+    }
+
+    // All pieces of the given color attacking the square, with sliders blocked by occ
+    public long attackersTo(int sq, Color by, long occ){
+        int base = by.ordinal() * 6;
+        long queens = pieceBB[base + Piece.QUEEN];
+        return (Bitboards.PAWN_ATTACKS[by.opposite().ordinal()][sq] & pieceBB[base + Piece.PAWN])
+            | (Bitboards.KNIGHT_ATTACKS[sq] & pieceBB[base + Piece.KNIGHT])
+            | (Bitboards.KING_ATTACKS[sq] & pieceBB[base + Piece.KING])
+            | (Bitboards.rookAttacks(sq, occ) & (pieceBB[base + Piece.ROOK] | queens))
+            | (Bitboards.bishopAttacks(sq, occ) & (pieceBB[base + Piece.BISHOP] | queens));
+    }
+
+    public int getKingSquare(Color color){ return kingSquare[color.ordinal()]; }
+
+    public boolean isInCheck(Color color){
+        long start = Stats.start();
+        int king = kingSquare[color.ordinal()];
+        boolean check = king >= 0 && isSquareAttacked(king, color.opposite());
+        Stats.end(Stats.IS_IN_CHECK, start);
+        return check;
+    }
+
+    // Pieces of the given color that are the only blocker between their king and an enemy slider
+    public long getPinned(Color color){
+        int king = kingSquare[color.ordinal()];
+        if (king < 0) return 0L;
+        int base = color.opposite().ordinal() * 6;
+        long queens = pieceBB[base + Piece.QUEEN];
+        long theirs = colorBB[color.opposite().ordinal()];
+        long snipers = (Bitboards.rookAttacks(king, theirs) & (pieceBB[base + Piece.ROOK] | queens))
+            | (Bitboards.bishopAttacks(king, theirs) & (pieceBB[base + Piece.BISHOP] | queens));
+        long pinned = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) pinned |= blockers;
+        }
+        return pinned & colorBB[color.ordinal()];
+    }
+
+    // Pseudo-legal moves: every piece generates its own targets, king safety is not checked
+    public void generatePseudoLegalMoves(Color color, MoveList moves){
+        for(long pieces = colorBB[color.ordinal()]; pieces != 0; pieces &= pieces - 1){
+            int from = Long.numberOfTrailingZeros(pieces);
+            squares[from].generateMoves(from, this, moves);
+        }
+    }
+
+    // Filters the pseudo-legal moves down to those that do not leave the own king in check
+    public void generateLegalMoves(Color color, MoveList moves){
+        generateLegal(color, moves, false);
+    }
+
+    // Legal captures and promotions only, for quiescence search
+    public void generateLegalCaptures(Color color, MoveList moves){
+        generateLegal(color, moves, true);
+    }
+
+    // Pseudo-legal generation filtered with the check and pin masks of the position, so only
+    // en passant needs to be tried on the board
+    private void generateLegal(Color color, MoveList moves, boolean capturesOnly){
+        int start = moves.size();
+        int king = kingSquare[color.ordinal()];
+        long checkers = king >= 0 ? attackersTo(king, color.opposite(), occupied) : 0L;
+        if ((checkers & (checkers - 1)) != 0) squares[king].generateMoves(king, this, moves);  // double check
+        else generatePseudoLegalMoves(color, moves);
+        long pinned = getPinned(color);
+        // With a single checker, other pieces must capture it or block the line to the king
+        long evasionMask = checkers == 0 ? ~0L
+            : checkers | Bitboards.between(king, Long.numberOfTrailingZeros(checkers));
+        int kept = start;
+        for(int i = start; i < moves.size(); i++){
+            int move = moves.get(i);
+            if(capturesOnly && !Move.isCapture(move) && !Move.isPromotion(move)) continue;
+            if(isLegal(color, move, king, checkers, pinned, evasionMask)) moves.set(kept++, move);
+        }
+        moves.truncate(kept);
+    }
+
+    private boolean isLegal(Color color, int move, int king, long checkers, long pinned, long evasionMask){
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        if(flags == Move.KING_CASTLE || flags == Move.QUEEN_CASTLE){
+            // May not castle out of, through or into check
+            if(checkers != 0) return false;
+            int step = flags == Move.KING_CASTLE ? 1 : -1;
+            for(int sq = from + step; sq != to + step; sq += step)
+                if(isSquareAttacked(sq, color.opposite())) return false;
+            return true;
+        }
+        if(from == king){
+            // Look from the target square with the king lifted off, so it cannot hide behind itself
+            return attackersTo(to, color.opposite(), occupied ^ (1L << from)) == 0;
+        }
+        if(flags == Move.EN_PASSANT || king < 0){
+            // Removes two pieces from one rank at once; simply try it
+            makeMove(move);
+            boolean legal = !isInCheck(color);
+            unmakeMove();
+            return legal;
+        }
+        if((evasionMask & (1L << to)) == 0) return false;
+        return (pinned & (1L << from)) == 0 || (Bitboards.line(king, from) & (1L << to)) != 0;
+    }
+
+    // True if the current position already occurred since the last capture or pawn move
+    public boolean isRepetition(){
+        int limit = Math.max(0, ply - halfmoveClock);
+        for(int i = ply - 2; i >= limit; i -= 2)
+            if(undoHash[i] == hash) return true;
+        return false;
+    }
+
+    // Times the current position has occurred, this occurrence included, since the last irreversible move
+    public int repetitionCount(){
+        int count = 1;
+        int limit = Math.max(0, ply - halfmoveClock);
+        for(int i = ply - 2; i >= limit; i -= 2)
+            if(undoHash[i] == hash) count++;
+        return count;
+    }
+
+    // Packs a from/to pair into a move for the current position, deriving the special-move flags.
+    // The promotion type is only used when a pawn reaches the last rank.
+    public int encodeMove(int from, int to, int promotionType){
+        Piece p = squares[from];
+        int flags = squares[to] != null ? Move.CAPTURE : Move.QUIET;
+        if(p instanceof Pawn){
+            if(Math.abs(to - from) == 16) flags = Move.DOUBLE_PUSH;
+            else if(to == enPassantSquare && (from & 7) != (to & 7)) flags = Move.EN_PASSANT;
+            else if((to >> 3) == 0 || (to >> 3) == 7) flags |= Move.PROMOTION | (promotionType - Piece.KNIGHT);
+        } else if(p instanceof King && Math.abs(to - from) == 2){
+            flags = to > from ? Move.KING_CASTLE : Move.QUEEN_CASTLE;
+        }
+        return Move.encode(from, to, flags);
+    }
+
+    public void makeMove(Move move){
+        makeMove(encodeMove(move.getFrom().getSquare(), move.getTo().getSquare(), move.getPromotion()));
+    }
+
+    // Plays a pseudo-legal move and records what is needed to take it back
+    public void makeMove(int move){
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        if(ply == undoMove.length) growUndoStack(ply * 2);
+        Piece p = squares[from];
+        undoMove[ply] = move;
+        undoState[ply] = castlingRights | (enPassantSquare + 1) << 4 | (p.hasMoved ? 1 : 0) << 11 | halfmoveClock << 12;
+        undoMoved[ply] = p;
+        undoHash[ply] = hash;
+        Piece captured = flags == Move.EN_PASSANT ? clear((from & ~7) | (to & 7)) : clear(to);
+        undoCaptured[ply] = captured;
+        ply++;
+
+        clear(from);
+        if(Move.isPromotion(move)){
+            put(Piece.create(Move.promotionType(move), p.color, Position.of(to)), to);
+        } else {
+            put(p, to);
+        }
+        p.position = Position.of(to);
+        p.hasMoved = true;
+        if(flags == Move.KING_CASTLE || flags == Move.QUEEN_CASTLE){
+            int rookFrom = flags == Move.KING_CASTLE ? from + 3 : from - 4;
+            int rookTo = flags == Move.KING_CASTLE ? from + 1 : from - 1;
+            Piece rook = clear(rookFrom);
+            put(rook, rookTo);
+            rook.position = Position.of(rookTo);
+            rook.hasMoved = true;
+        }
+
+        hash ^= Zobrist.CASTLING[castlingRights];
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        hash ^= Zobrist.CASTLING[castlingRights];
+        if(enPassantSquare >= 0) hash ^= Zobrist.EN_PASSANT_FILE[enPassantSquare & 7];
+        enPassantSquare = -1;
+        if(flags == Move.DOUBLE_PUSH){
+            int passed = (from + to) >> 1;
+            if((Bitboards.PAWN_ATTACKS[p.color.ordinal()][passed] & pieceBB[p.color.opposite().ordinal() * 6 + Piece.PAWN]) != 0){
+                enPassantSquare = passed;
+                hash ^= Zobrist.EN_PASSANT_FILE[passed & 7];
+            }
+        }
+        halfmoveClock = (p instanceof Pawn || captured != null) ? 0 : halfmoveClock + 1;
+        if(sideToMove == Color.BLACK) fullmoveNumber++;
+        sideToMove = sideToMove.opposite();
+        hash ^= Zobrist.SIDE;
+    }
+
+    public void unmakeMove(){
+        ply--;
+        int move = undoMove[ply], state = undoState[ply];
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        Piece p = undoMoved[ply];
+        sideToMove = sideToMove.opposite();
+        if(sideToMove == Color.BLACK) fullmoveNumber--;
+
+        if(flags == Move.KING_CASTLE || flags == Move.QUEEN_CASTLE){
+            int rookFrom = flags == Move.KING_CASTLE ? from + 3 : from - 4;
+            int rookTo = flags == Move.KING_CASTLE ? from + 1 : from - 1;
+            Piece rook = clear(rookTo);
+            put(rook, rookFrom);
+            rook.position = Position.of(rookFrom);
+            rook.hasMoved = false;
+        }
+        clear(to);
+        put(p, from);
+        p.position = Position.of(from);
+        p.hasMoved = (state & (1 << 11)) != 0;
+        Piece captured = undoCaptured[ply];
+        if(captured != null) put(captured, flags == Move.EN_PASSANT ? (from & ~7) | (to & 7) : to);
+        undoMoved[ply] = null;
+        undoCaptured[ply] = null;
+
+        castlingRights = state & 15;
+        enPassantSquare = ((state >>> 4) & 127) - 1;
+        halfmoveClock = state >>> 12;
+        hash = undoHash[ply];
+    }
+
+    private void growUndoStack(int size){
+        undoMove = Arrays.copyOf(undoMove, size);
+        undoState = Arrays.copyOf(undoState, size);
+        undoMoved = Arrays.copyOf(undoMoved, size);
+        undoCaptured = Arrays.copyOf(undoCaptured, size);
+        undoHash = Arrays.copyOf(undoHash, size);
+    }
+
+    public boolean hasLegalMoves(Color color){
+        legalBuffer.clear();
+        generateLegalMoves(color, legalBuffer);
+        return !legalBuffer.isEmpty();
+    }
+
+    // Move objects for callers outside the engine; the engine itself works on packed moves in a MoveList
+    public List<Move> getAllLegalMoves(Color color){
+        long start = Stats.start();
+        legalBuffer.clear();
+        generateLegalMoves(color, legalBuffer);
+        List<Move> moves = new ArrayList<>(legalBuffer.size());
+        for(int i = 0; i < legalBuffer.size(); i++){
+            int move = legalBuffer.get(i);
+            // One entry per from/to pair: the promotion piece is chosen when the move is played
+            if(Move.isPromotion(move) && Move.promotionType(move) != Piece.QUEEN) continue;
+            moves.add(Move.of(move));
+        }
+        Stats.end(Stats.GET_ALL_LEGAL_MOVES, start, moves.size());
+        return moves;
+    }
+}
@@ -0,0 +1,220 @@
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+// Draws a Board as ANSI-colored text into one reused byte buffer, written to the stream with a
+// single call. Squares are drawn from precomputed cells, one per (background, piece) pair.
+//
+// render() draws the whole board at the cursor. repaint() keeps the board at a fixed place on
+// the screen (the origin) and only redraws the squares whose piece or background changed since
+// its last frame, including the last move highlight, reaching them with cursor moves; an
+// unchanged position writes nothing. The cursor is saved and restored around every repaint, so
+// text printed elsewhere on the screen is not disturbed. One renderer per screen; not thread-safe.
+final class BoardRenderer {
+    public static final int HEIGHT = 12;   // lines of a frame
+    public static final int WIDTH = 28;    // columns of a frame
+
+    private static final byte[] FILES = bytes("   a  b  c  d  e  f  g  h");
+    private static final byte[] RULE = bytes(" --------------------------");
+    private static final byte[] NEWLINE = bytes(System.lineSeparator());
+    private static final byte[] SAVE_CURSOR = bytes("\u001B7"), RESTORE_CURSOR = bytes("\u001B8");
+    private static final byte[] CLEAR_SCREEN = bytes("\u001B[2J");
+
+    // Background codes, and the piece code of an empty square (pieces are color * 6 + type)
+    private static final int LIGHT = 0, DARK = 1, HIGHLIGHT = 2, EMPTY = 12;
+    private static final byte[][] CELLS = new byte[3 * 13][];
+
+    static {
+        String[] backgrounds = {Board.BG_LIGHT, Board.BG_DARK, Board.BG_HIGHLIGHT};
+        String symbols = "PNBRQKpnbrqk";
+        for (int bg = 0; bg < 3; bg++) {
+            for (int piece = 0; piece <= EMPTY; piece++) {
+                String color = piece == EMPTY ? "" : piece < 6 ? Board.WHITE_PIECE : Board.BLACK_PIECE;
+                String symbol = piece == EMPTY ? "." : symbols.substring(piece, piece + 1);
+                CELLS[bg * 13 + piece] = bytes(backgrounds[bg] + color + " " + symbol + " " + Board.RESET);
+            }
+        }
+    }
+
+    private byte[] buffer = new byte[2048];   // a full frame is about 1.2 KB
+    private int length;
+
+    private int originRow = 1, originCol = 1;   // 1-based screen position of repaint()'s frame
+    private final int[] shown = new int[64];    // cell last drawn by repaint() per square, -1 unknown
+    private boolean drawn;
+
+    public BoardRenderer() { invalidate(); }
+
+    // Moves repaint()'s frame; the next repaint draws it whole
+    public void setOrigin(int row, int col) {
+        if (row < 1 || col < 1) throw new IllegalArgumentException("origin is 1-based");
+        if (row == originRow && col == originCol) return;
+        originRow = row;
+        originCol = col;
+        invalidate();
+    }
+
+    public int getOriginRow() { return originRow; }
+    public int getOriginCol() { return originCol; }
+
+    // Forgets what is on the screen, so the next repaint draws the whole frame
+    public void invalidate() {
+        java.util.Arrays.fill(shown, -1);
+        drawn = false;
+    }
+
+    // The whole board at the cursor, as lines
+    public void render(Board board, PrintStream out) {
+        length = 0;
+        append(FILES); append(NEWLINE);
+        append(RULE); append(NEWLINE);
+        for (int r = 0; r < 8; r++) {
+            appendRank(r, true);
+            for (int c = 0; c < 8; c++) append(CELLS[cell(board, r * 8 + c)]);
+            appendRank(r, false);
+            append(NEWLINE);
+        }
+        append(RULE); append(NEWLINE);
+        append(FILES); append(NEWLINE);
+        flush(out);
+    }
+
+    // Brings the frame at the origin up to date with the board, writing only what changed
+    public void repaint(Board board, PrintStream out) {
+        length = 0;
+        if (appendRepaint(board)) flush(out);
+    }
+
+    // Clears the screen, draws the board at the top and keeps it there: the lines below become the
+    // scrolling region, where the cursor is left, so printed text scrolls underneath the board
+    public void pin(Board board, PrintStream out) {
+        setOrigin(1, 1);
+        invalidate();
+        length = 0;
+        append(CLEAR_SCREEN);
+        appendRepaint(board);
+        appendCsi(HEIGHT + 1, 'r');
+        appendCsi(HEIGHT + 1, 1, 'H');
+        flush(out);
+    }
+
+    // Gives the whole screen back to scrolling text and puts the cursor at the bottom
+    public void unpin(PrintStream out) {
+        length = 0;
+        appendCsi(-1, 'r');
+        appendCsi(999, 1, 'H');
+        append(NEWLINE);
+        flush(out);
+        invalidate();
+    }
+
+    // Appends the cursor moves and cells that bring the screen up to date; false if nothing changed
+    private boolean appendRepaint(Board board) {
+        int start = length;
+        append(SAVE_CURSOR);
+        boolean changed = !drawn;
+        if (!drawn) {
+            moveTo(0, 0); append(FILES);
+            moveTo(1, 0); append(RULE);
+            for (int r = 0; r < 8; r++) {
+                moveTo(2 + r, 0);
+                appendRank(r, true);
+                for (int c = 0; c < 8; c++) append(CELLS[shown[r * 8 + c] = cell(board, r * 8 + c)]);
+                appendRank(r, false);
+            }
+            moveTo(10, 0); append(RULE);
+            moveTo(11, 0); append(FILES);
+            drawn = true;
+        } else {
+            int lastCol = -1, lastRow = -1;
+            for (int sq = 0; sq < 64; sq++) {
+                int code = cell(board, sq);
+                if (code == shown[sq]) continue;
+                shown[sq] = code;
+                int r = sq >> 3, c = sq & 7;
+                // Neighbouring cells on a row continue where the last one ended
+                if (r != lastRow || c != lastCol + 1) moveTo(2 + r, 3 + 3 * c);
+                append(CELLS[code]);
+                lastRow = r;
+                lastCol = c;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            length = start;
+            return false;
+        }
+        append(RESTORE_CURSOR);
+        return true;
+    }
+
+    private static int cell(Board board, int sq) {
+        int bg = ((sq >> 3) + (sq & 7)) % 2 == 0 ? LIGHT : DARK;
+        int last = board.getLastMove();
+        if (last != 0 && (sq == Move.from(last) || sq == Move.to(last))) bg = HIGHLIGHT;
+        Piece p = board.getPiece(sq);
+        int piece = p == null ? EMPTY : p.getColor().ordinal() * 6 + p.getType();
+        return bg * 13 + piece;
+    }
+
+    // "8 |" before the squares of row r, "| 8" after them
+    private void appendRank(int r, boolean left) {
+        ensure(3);
+        byte rank = (byte) ('8' - r);
+        if (left) {
+            buffer[length++] = rank;
+            buffer[length++] = ' ';
+            buffer[length++] = '|';
+        } else {
+            buffer[length++] = '|';
+            buffer[length++] = ' ';
+            buffer[length++] = rank;
+        }
+    }
+
+    // Cursor to a line and column of the frame, counted from 0
+    private void moveTo(int line, int col) {
+        appendCsi(originRow + line, originCol + col, 'H');
+    }
+
+    // ESC [ n final, or ESC [ final when n is negative
+    private void appendCsi(int n, char fin) {
+        ensure(16);
+        buffer[length++] = 0x1B;
+        buffer[length++] = '[';
+        if (n >= 0) appendInt(n);
+        buffer[length++] = (byte) fin;
+    }
+
+    private void appendCsi(int a, int b, char fin) {
+        ensure(32);
+        buffer[length++] = 0x1B;
+        buffer[length++] = '[';
+        appendInt(a);
+        buffer[length++] = ';';
+        appendInt(b);
+        buffer[length++] = (byte) fin;
+    }
+
+    // Caller ensures room for ten digits
+    private void appendInt(int n) {
+        if (n >= 10) appendInt(n / 10);
+        buffer[length++] = (byte) ('0' + n % 10);
+    }
+
+    private void append(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) buffer = java.util.Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+    }
+
+    private void flush(PrintStream out) {
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+
+    private static byte[] bytes(String s) { return s.getBytes(StandardCharsets.US_ASCII); }
+}
@@ -0,0 +1,398 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Consistency checks for state the engine keeps incrementally or caches, each compared with a
+// plain recomputation. Positions come from random walks: from one of the benchmark positions, a
+// walk plays random legal moves, takes one back now and then and starts over when the game ends,
+// so both make and unmake paths are covered as in a search. Each check reports how many
+// comparisons it made and the mismatches, printing the first few with their FEN.
+final class Checks {
+    private static final int MAX_WALK_PLIES = 100;
+    private static final int MAX_ERRORS = 10;
+    private static final int[] CACHE_CAPACITIES = {1, 2, 3, 7, 16, 64};
+    private static final int ILLEGAL_TRIES = 30;   // random illegal moves tried per ply
+    private static final int JOURNAL_GAMES_AT_ONCE = 8;
+    private static final int MAX_JOURNAL_PLIES = 400;   // more than one 248-move block
+    private static final int JOURNAL_CONTINUATION = 10; // plies played after resuming a game
+
+    private final SplittableRandom random;
+    private final PrintStream out;
+    private long compared, mismatches;
+
+    private Checks(long seed, PrintStream out) {
+        this.random = new SplittableRandom(seed);
+        this.out = out;
+    }
+
+    // A random walk over positions; setup is applied to each new start position
+    private final class Walk {
+        private final MoveList moves = new MoveList();
+        private final Consumer<Board> setup;
+        Board board;
+
+        Walk(Consumer<Board> setup) {
+            this.setup = setup;
+            restart();
+        }
+
+        // One ply on: usually a random legal move, sometimes a move taken back
+        void step() {
+            moves.clear();
+            board.generateLegalMoves(board.getSideToMove(), moves);
+            if (moves.isEmpty() || board.getPly() >= MAX_WALK_PLIES) restart();
+            else if (board.getPly() > 0 && random.nextInt(4) == 0) board.unmakeMove();
+            else board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+
+        private void restart() {
+            board = new Board(Benchmarks.POSITIONS[random.nextInt(Benchmarks.POSITIONS.length)][1]);
+            setup.accept(board);
+        }
+    }
+
+    private void mismatch(Board board, String description) {
+        if (++mismatches <= MAX_ERRORS) out.printf("Mismatch: %s%n  FEN %s%n", description, board.toFen());
+    }
+
+    private void mismatch(String description) {
+        if (++mismatches <= MAX_ERRORS) out.printf("Mismatch: %s%n", description);
+    }
+
+    // The material and piece-square totals, the game phase and the network evaluation that Board
+    // keeps current in put() and clear(), against sums over the pieces on the board. The reference
+    // network evaluation always uses the scalar kernel, so this also checks the vector kernel.
+    private void checkEval(long positions, Nnue net) {
+        Walk walk = new Walk(board -> board.setAccumulator(net.newAccumulator()));
+        for (long i = 0; i < positions; i++, walk.step()) {
+            Board board = walk.board;
+            int mg = 0, eg = 0, phase = 0;
+            for (long b = board.getOccupied(); b != 0; b &= b - 1) {
+                int sq = Long.numberOfTrailingZeros(b);
+                Piece p = board.getPiece(sq);
+                int index = p.getColor().ordinal() * 6 + p.getType();
+                mg += Evaluation.MG[index][sq];
+                eg += Evaluation.EG[index][sq];
+                phase += Evaluation.PHASE[p.getType()];
+            }
+            compared++;
+            if (board.getMidgameScore() != mg || board.getEndgameScore() != eg || board.getPhase() != phase) {
+                mismatch(board, String.format("board totals mg %d eg %d phase %d, recomputed mg %d eg %d phase %d",
+                    board.getMidgameScore(), board.getEndgameScore(), board.getPhase(), mg, eg, phase));
+            }
+            int incremental = board.getAccumulator().evaluate(board.getSideToMove());
+            int fromScratch = net.evaluateFromScratch(board);
+            if (incremental != fromScratch)
+                mismatch(board, "network evaluation " + incremental + ", from scratch " + fromScratch);
+        }
+    }
+
+    // The legal move cache against fresh generation, at capacities from one position (every
+    // lookup after a move misses and recycles the slot) to more than a walk revisits. Also checks
+    // that each origin square's range holds exactly the moves from that square.
+    private void checkCache(long positions) {
+        MoveList fresh = new MoveList();
+        int[] expected = new int[MoveList.CAPACITY], cached = new int[MoveList.CAPACITY];
+        for (int capacity : CACHE_CAPACITIES) {
+            LegalMoveCache cache = new LegalMoveCache(capacity);
+            Walk walk = new Walk(board -> { });
+            for (long i = 0; i < positions; i++, walk.step()) {
+                Board board = walk.board;
+                LegalMoveCache.Entry entry = cache.get(board);
+                fresh.clear();
+                board.generateLegalMoves(board.getSideToMove(), fresh);
+                int n = fresh.size(), m = entry.size();
+                for (int k = 0; k < n; k++) expected[k] = fresh.get(k);
+                for (int k = 0; k < m; k++) cached[k] = entry.get(k);
+                Arrays.sort(expected, 0, n);
+                Arrays.sort(cached, 0, m);
+                compared++;
+                if (!Arrays.equals(expected, 0, n, cached, 0, m)) {
+                    mismatch(board, "capacity " + capacity + ": cached moves differ from generated ones");
+                    continue;
+                }
+                for (int sq = 0; sq < 64; sq++) {
+                    boolean ok = entry.firstFrom(sq) <= entry.endFrom(sq);
+                    for (int k = entry.firstFrom(sq); ok && k < entry.endFrom(sq); k++) ok = Move.from(entry.get(k)) == sq;
+                    if (!ok) {
+                        mismatch(board, "capacity " + capacity + ": moves from " + Position.of(sq) + " are not indexed by their square");
+                        break;
+                    }
+                }
+            }
+            out.printf("capacity %d: %d hits, %d misses%n", capacity, cache.getHits(), cache.getMisses());
+        }
+    }
+
+    // Random games through ChessGame, which validates moves from its cache: every ply tries
+    // random from and to squares that are not a legal move, which must be refused without
+    // changing the board, then plays a random legal move, which must be accepted and leave the
+    // position a plain Board reaches with the same move.
+    private void checkGames(long games) {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        MoveList legal = new MoveList();
+        long illegal = 0, played = 0;
+        for (long g = 0; g < games; g++) {
+            ChessGame game = new ChessGame("White", "Black", discard, null);
+            Board reference = new Board();
+            while (!game.isGameOver() && reference.getPly() < MAX_WALK_PLIES * 2) {
+                Board board = game.getBoard();
+                legal.clear();
+                reference.generateLegalMoves(reference.getSideToMove(), legal);
+                if (legal.isEmpty()) {
+                    mismatch(board, "no legal moves but the game goes on");
+                    break;
+                }
+                for (int k = 0; k < ILLEGAL_TRIES; k++) {
+                    int from = random.nextInt(64), to = random.nextInt(64);
+                    if (isLegal(from, to, legal)) continue;
+                    illegal++;
+                    if (game.makeMove(Position.of(from).toString(), Position.of(to).toString()) || board.getHash() != reference.getHash()) {
+                        mismatch(board, "ChessGame accepted " + Position.of(from) + Position.of(to));
+                        break;
+                    }
+                }
+                int move = legal.get(random.nextInt(legal.size()));
+                int promotion = Move.isPromotion(move) ? Move.promotionType(move) : Piece.QUEEN;
+                reference.makeMove(move);
+                played++;
+                if (!game.makeMove(Position.of(Move.from(move)).toString(), Position.of(Move.to(move)).toString(), promotion)
+                        || game.getBoard().getHash() != reference.getHash()) {
+                    mismatch(board, "ChessGame did not play " + Move.notation(move));
+                    break;
+                }
+            }
+        }
+        compared += played;
+        out.printf("games: %d games, %d legal moves played, %d illegal moves refused%n", games, played, illegal);
+    }
+
+    // A journaled game as it was played
+    private static final class Played {
+        final ChessGame game;
+        final String fen;
+        final int limit;                 // plies after which the game is abandoned unfinished
+        int[] moves = new int[64];
+        int size;
+        boolean finished;
+
+        Played(ChessGame game, String fen, int limit) {
+            this.game = game;
+            this.fen = fen;
+            this.limit = limit;
+        }
+
+        void add(int move) {
+            if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+            moves[size++] = move;
+        }
+    }
+
+    // Journal round trip: random games from the benchmark positions are played through ChessGame
+    // into one journal file, several at a time so their blocks interleave. Games end or are
+    // abandoned at a random ply, some past the first move block. The file is then opened a second
+    // time without closing or syncing the first instance, as after a killed process, and every
+    // game must read back with its moves and end mark. Each interrupted game is resumed by replay,
+    // which must reach the position it was left in, continued for a few moves and ended; a third
+    // opening must see the continuation. Finally the PGN export must replay through parseSan to
+    // every game's last position.
+    private void checkJournal(Path file, int games) throws IOException {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        Map<Long, Played> expected = new TreeMap<>();
+        List<Played> active = new ArrayList<>();
+        MoveList legal = new MoveList();
+        try (GameJournal writing = new GameJournal(file, GameJournal.DEFAULT_SYNC_MILLIS)) {
+            int started = 0;
+            while (started < games || !active.isEmpty()) {
+                if (started < games && (active.size() < JOURNAL_GAMES_AT_ONCE || random.nextInt(8) == 0)) {
+                    ChessGame game = new ChessGame("White", "Black", discard, null);
+                    String fen = Benchmarks.POSITIONS[random.nextInt(Benchmarks.POSITIONS.length)][1];
+                    if (!fen.equals(Board.START_FEN)) game.loadFen(fen);
+                    game.setJournal(writing.create("White " + started, "Black " + started, game.getBoard().toFen()));
+                    Played p = new Played(game, game.getBoard().toFen(), random.nextInt(1, MAX_JOURNAL_PLIES));
+                    expected.put(game.getJournal().getId(), p);
+                    active.add(p);
+                    started++;
+                    continue;
+                }
+                int i = random.nextInt(active.size());
+                Played p = active.get(i);
+                if (!playRandom(p, legal) || p.finished || p.size >= p.limit) {
+                    active.set(i, active.get(active.size() - 1));
+                    active.remove(active.size() - 1);
+                }
+            }
+
+            try (GameJournal reading = new GameJournal(file, GameJournal.DEFAULT_SYNC_MILLIS)) {
+                compareRecords(reading, expected);
+                int resumed = 0;
+                for (GameJournal.Record r : reading.interrupted()) {
+                    Played p = expected.get(r.id);
+                    if (p == null) continue;   // already reported
+                    ChessGame game = new ChessGame(r.white, r.black, discard, null);
+                    if (!r.fen.equals(Board.START_FEN)) game.loadFen(r.fen);
+                    int played = game.replay(r.moves);
+                    compared += played;
+                    if (played != p.size || game.getBoard().getHash() != p.game.getBoard().getHash()) {
+                        mismatch(game.getBoard(), "game " + r.id + " replays " + played + " of " + p.size + " moves to another position");
+                        continue;
+                    }
+                    game.setJournal(reading.resume(r, played));
+                    Played continued = new Played(game, p.fen, p.size + JOURNAL_CONTINUATION);
+                    continued.moves = p.moves.clone();
+                    continued.size = p.size;
+                    while (!continued.finished && continued.size < continued.limit && playRandom(continued, legal)) { }
+                    if (!continued.finished) {
+                        game.getJournal().finish();
+                        continued.finished = true;
+                    }
+                    expected.put(r.id, continued);
+                    resumed++;
+                }
+                try (GameJournal reopened = new GameJournal(file, GameJournal.DEFAULT_SYNC_MILLIS)) {
+                    compareRecords(reopened, expected);
+                    StringBuilder pgn = new StringBuilder();
+                    int exported = reopened.exportPgn(pgn);
+                    if (exported != expected.size()) mismatch("export wrote " + exported + " of " + expected.size() + " games");
+                    comparePgn(pgn.toString(), expected, legal);
+                }
+                out.printf("journal: %d games, %d resumed, %d moves, file %d KB%n",
+                    games, resumed, expected.values().stream().mapToLong(p -> p.size).sum(), Files.size(file) / 1024);
+            }
+        }
+    }
+
+    // Plays a random legal move through the game; false if it was refused or there was none
+    private boolean playRandom(Played p, MoveList legal) {
+        Board board = p.game.getBoard();
+        legal.clear();
+        board.generateLegalMoves(board.getSideToMove(), legal);
+        if (legal.isEmpty()) return false;
+        int move = legal.get(random.nextInt(legal.size()));
+        int promotion = Move.isPromotion(move) ? Move.promotionType(move) : Piece.QUEEN;
+        if (!p.game.makeMove(Position.of(Move.from(move)).toString(), Position.of(Move.to(move)).toString(), promotion)) {
+            mismatch(board, "ChessGame refused " + Move.notation(move));
+            return false;
+        }
+        p.add(move);
+        p.finished = p.game.isGameOver();
+        return true;
+    }
+
+    private void compareRecords(GameJournal journal, Map<Long, Played> expected) {
+        Set<Long> seen = new HashSet<>();
+        for (GameJournal.Record r : journal.records()) {
+            Played p = expected.get(r.id);
+            if (p == null) {
+                mismatch("journal has unknown game " + r.id);
+                continue;
+            }
+            seen.add(r.id);
+            compared += r.moves.length;
+            if (!r.fen.equals(p.fen) || r.finished != p.finished || !Arrays.equals(r.moves, 0, r.moves.length, p.moves, 0, p.size)) {
+                mismatch(String.format("game %d reads back %d moves%s, played %d%s", r.id, r.moves.length,
+                    r.finished ? " ended" : "", p.size, p.finished ? " ended" : ""));
+            }
+        }
+        for (long id : expected.keySet()) if (!seen.contains(id)) mismatch("game " + id + " is missing from the journal");
+    }
+
+    private void comparePgn(String pgn, Map<Long, Played> expected, MoveList legal) {
+        for (String text : pgn.split("(?m)^(?=\\[Event )")) {
+            if (text.isBlank()) continue;
+            Pgn.Game game = Pgn.parse(text);
+            String event = game.tag("Event");
+            Played p = event == null ? null : expected.get(Long.parseLong(event.substring(event.lastIndexOf(' ') + 1)));
+            if (p == null) {
+                mismatch("export has unknown game " + event);
+                continue;
+            }
+            Board board = new Board(game.tag("FEN") != null ? game.tag("FEN") : Board.START_FEN);
+            int n = 0;
+            for (String san : game.moves) {
+                int move = Pgn.parseSan(board, san, legal);
+                if (move <= 0 || n >= p.size || move != p.moves[n]) break;
+                board.makeMove(move);
+                n++;
+            }
+            compared += n;
+            if (n != p.size || board.getHash() != p.game.getBoard().getHash() || !p.finished && !game.result.equals("*"))
+                mismatch(board, event + " exports " + n + " of " + p.size + " moves, result " + game.result);
+        }
+    }
+
+    private static boolean isLegal(int from, int to, MoveList legal) {
+        for (int i = 0; i < legal.size(); i++) if ((legal.get(i) & 4095) == (from | to << 6)) return true;
+        return false;
+    }
+
+    private void report(String name, String units, double seconds) {
+        out.printf("%s: %d %s compared in %.2f s%n", name, compared, units, seconds);
+        out.printf("Mismatches: %d%n", mismatches);
+    }
+
+    // check eval [positions <n>] [seed <n>] [nnue <file>]
+    // check cache [positions <n>] [games <n>] [seed <n>]
+    // check journal [games <n>] [seed <n>]
+    public static void run(String[] args) {
+        String mode = args.length > 1 ? args[1] : "";
+        long positions = 200_000, games = mode.equals("journal") ? 2000 : 200, seed = 1;
+        String netFile = null;
+        boolean usage = !mode.equals("eval") && !mode.equals("cache") && !mode.equals("journal");
+        try {
+            for (int i = 2; i < args.length && !usage; i++) {
+                if (args[i].equals("positions") && i + 1 < args.length && !mode.equals("journal")) positions = Long.parseLong(args[++i]);
+                else if (args[i].equals("seed") && i + 1 < args.length) seed = Long.parseLong(args[++i]);
+                else if (args[i].equals("nnue") && i + 1 < args.length && mode.equals("eval")) netFile = args[++i];
+                else if (args[i].equals("games") && i + 1 < args.length && !mode.equals("eval")) games = Long.parseLong(args[++i]);
+                else usage = true;
+            }
+        } catch (NumberFormatException e) {
+            usage = true;
+        }
+        if (usage || positions < 1 || games < 0 || games > Integer.MAX_VALUE) {
+            System.out.println("Usage: java ChessMain check eval [positions <n>] [seed <n>] [nnue <file>]");
+            System.out.println("       java ChessMain check cache [positions <n>] [games <n>] [seed <n>]");
+            System.out.println("       java ChessMain check journal [games <n>] [seed <n>]");
+            return;
+        }
+        Checks checks = new Checks(seed, System.out);
+        long start = System.nanoTime();
+        if (mode.equals("eval")) {
+            Nnue net;
+            try {
+                net = netFile == null ? Nnue.random(256, seed) : Nnue.load(Paths.get(netFile));
+            } catch (IOException e) {
+                System.out.println("Cannot load network " + netFile + ": " + e.getMessage());
+                return;
+            }
+            System.out.printf("Evaluation check: %d positions, seed %d, %s network with %d hidden units, %s kernel%n",
+                positions, seed, netFile == null ? "random" : netFile, net.getHidden(), Nnue.getKernelName());
+            checks.checkEval(positions, net);
+            checks.report(mode, "positions", (System.nanoTime() - start) / 1e9);
+        } else if (mode.equals("cache")) {
+            System.out.printf("Legal move cache check: %d positions per capacity, %d games, seed %d%n", positions, games, seed);
+            checks.checkCache(positions);
+            checks.checkGames(games);
+            checks.report(mode, "positions", (System.nanoTime() - start) / 1e9);
+        } else {
+            System.out.printf("Journal check: %d games, seed %d%n", games, seed);
+            Path file = null;
+            try {
+                file = Files.createTempFile("journal-check", ".cgj");
+                checks.checkJournal(file, (int) games);
+            } catch (IOException e) {
+                System.out.println("Cannot write journal " + file + ": " + e.getMessage());
+                return;
+            } finally {
+                try {
+                    if (file != null) Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.out.println("Cannot delete " + file + ": " + e.getMessage());
+                }
+            }
+            checks.report(mode, "moves", (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.PrintStream;
+import java.util.*;
+
+// ChessGame
+class ChessGame {
+    private Board board;
+    private Player white, black, current;
+    private final PrintStream out;   // where game messages go
+    private final Scanner input;     // where promotion choices come from; null to always promote to a queen
+    private int[] moveHistory = new int[256];   // packed moves played
+    private int historySize;
+    private final MoveList legal = new MoveList();
+    // Recent positions' legal moves: the current one, plus any the game returns to
+    private final LegalMoveCache legalMoves = new LegalMoveCache(LEGAL_CACHE_POSITIONS);
+    private static final int LEGAL_CACHE_POSITIONS = 16;
+    private final BoardRenderer renderer = new BoardRenderer();
+    private boolean differential;   // displayBoard() repaints only what changed, board pinned at the top
+    private GameJournal.Writer journal;   // where accepted moves are recorded, or null
+    private boolean gameOver;
+    // Occurrences of every position key reached since the last capture or pawn move, for threefold
+    // repetition: one update per move instead of a scan back through the game
+    private final Map<Long,Integer> positionCounts = new HashMap<>();
+
+    public ChessGame(String whiteName,String blackName){
+        this(whiteName, blackName, System.out, new Scanner(System.in));
+    }
+
+    public ChessGame(String whiteName,String blackName,PrintStream out,Scanner input){
+        this.out=out; this.input=input;
+        board=new Board();
+        white=new Player(whiteName,Color.WHITE);
+        black=new Player(blackName,Color.BLACK);
+        current=white;
+        gameOver=false;
+        positionCounts.put(board.getHash(), 1);
+    }
+
+    public static final int ASK_PROMOTION = -1;
+
+    public boolean makeMove(String fromNotation, String toNotation){
+        return makeMove(fromNotation, toNotation, ASK_PROMOTION);
+    }
+
+    // promotionType is a Piece type code, or ASK_PROMOTION to prompt the player if a pawn promotes
+    public boolean makeMove(String fromNotation, String toNotation, int promotionType){
+        if(!Stats.ENABLED) return playMove(fromNotation, toNotation, promotionType);
+        Stats.MakeMoveEvent event = new Stats.MakeMoveEvent();
+        event.begin();
+        long start = Stats.start();
+        boolean accepted = playMove(fromNotation, toNotation, promotionType);
+        Stats.end(Stats.MAKE_MOVE, start);
+        event.end();
+        if(event.shouldCommit()){
+            event.from = fromNotation;
+            event.to = toNotation;
+            event.accepted = accepted;
+            event.commit();
+        }
+        return accepted;
+    }
+
+    private boolean playMove(String fromNotation, String toNotation, int promotionType){
+        if(gameOver){out.println("Game over!"); return false;}
+        Position from=new Position(fromNotation);
+        Position to=new Position(toNotation);
+        if(!from.isValid()||!to.isValid()){out.println("Invalid position!"); return false;}
+        Piece p=board.getPiece(from);
+        if(p==null){out.println("No piece at "+fromNotation); return false;}
+        if(p.getColor()!=current.getColor()){out.println("Not your piece!"); return false;}
+
+        LegalMoveCache.Entry moves = legalMoves.get(board);
+        int packed = moves.find(from.getSquare(), to.getSquare(), Piece.QUEEN);
+        if(packed == 0){ explainIllegalMove(p, from, to); return false; }
+
+        // Play the chosen piece if the pawn promotes to something else
+        if(Move.isPromotion(packed)){
+            int type = promotionType == ASK_PROMOTION ? handlePawnPromotion() : promotionType;
+            int chosen = moves.find(from.getSquare(), to.getSquare(), type);
+            if(chosen != 0) packed = chosen;
+        }
+        board.makeMove(packed);
+        if(Move.isPromotion(packed)) out.println("Pawn promoted to " + board.getPiece(to).getClass().getSimpleName() + "!");
+        record(packed);
+        if(journal != null) journal.append(packed);
+        checkGameOver();
+        if(gameOver && journal != null) journal.finish();
+        return true;
+    }
+
+    // Bookkeeping after a move was made on the board
+    private void record(int packed){
+        if(historySize == moveHistory.length) moveHistory = Arrays.copyOf(moveHistory, historySize * 2);
+        moveHistory[historySize++] = packed;
+        board.setLastMove(packed);
+        // Positions before an irreversible move can't occur again
+        if(board.getHalfmoveClock() == 0) positionCounts.clear();
+        positionCounts.merge(board.getHash(), 1, Integer::sum);
+        switchPlayer();
+    }
+
+    // Times the current position has occurred, this occurrence included
+    private int repetitionCount(){
+        return positionCounts.getOrDefault(board.getHash(), 1);
+    }
+
+    // Plays recorded packed moves silently, stopping at the first one that is not legal or when the
+    // game ends; returns how many were played. Moves are not journaled.
+    public int replay(int[] moves){
+        int played = 0;
+        for(; played < moves.length && !gameOver; played++){
+            int m = moves[played];
+            int promotion = Move.isPromotion(m) ? Move.promotionType(m) : Piece.QUEEN;
+            if(m == 0 || legalMoves.get(board).find(Move.from(m), Move.to(m), promotion) != m) break;
+            board.makeMove(m);
+            record(m);
+            if(legalMoves.get(board).size() == 0 || repetitionCount() >= 3) gameOver = true;
+        }
+        checkGameOver();
+        return played;
+    }
+
+    // Records every accepted move from now on; null stops recording
+    public void setJournal(GameJournal.Writer journal){ this.journal = journal; }
+    public GameJournal.Writer getJournal(){ return journal; }
+
+    // Reports which rule a move that is not in the legal list breaks
+    private void explainIllegalMove(Piece p, Position from, Position to) {
+        if (p instanceof King && from.getRow() == to.getRow() && Math.abs(from.getCol() - to.getCol()) == 2
+                && !handleCastlingValidation(from, to)) return;
+        if (!p.isValidMove(from, to, board)) out.println("Invalid move for " + p.getClass().getSimpleName());
+        else out.println("Invalid move: You would be in check!");
+    }
+
+    private boolean handleCastlingValidation(Position from, Position to) {
+        if (board.isInCheck(current.getColor())) {
+            out.println("Invalid move: Cannot castle while in check!");
+            return false;
+        }
+        int step = (to.getCol() > from.getCol()) ? 1 : -1;
+        for (int sq = from.getSquare() + step; sq != to.getSquare() + step; sq += step) {
+            if (board.isSquareAttacked(sq, current.getColor().opposite())) {
+                out.println("Invalid move: Cannot castle through or into an attacked square!");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int handlePawnPromotion() {
+        if (input == null || !input.hasNextLine()) return Piece.QUEEN;
+        out.print("Pawn promotion! Choose piece (Q, R, B, N): ");
+        String choice = input.nextLine().trim().toUpperCase();
+
+        switch (choice) {
+            case "R": return Piece.ROOK;
+            case "B": return Piece.BISHOP;
+            case "N": return Piece.KNIGHT;
+            default: return Piece.QUEEN; // default to Queen if input invalid
+        }
+    }
+
+    private void switchPlayer(){ current = (current==white) ? black:white; }
+    
+    private void checkGameOver(){
+        boolean inCheck=board.isInCheck(current.getColor());
+        if(legalMoves.get(board).size() == 0){
+            gameOver=true;
+            if(inCheck) out.println("Checkmate! "+ current.getColor().opposite() +" wins!");
+            else out.println("Stalemate! Draw!");
+            return;
+        }
+        if(repetitionCount() >= 3){
+            gameOver=true;
+            out.println("Draw by threefold repetition!");
+        } else if (inCheck) {
+            out.println(current.getName() + " is in check!");
+        }
+    }
+
+    // Starts over from the given position; throws IllegalArgumentException for a malformed or impossible FEN
+    public void loadFen(String fen){
+        Board loaded=new Board(fen);
+        String problem=loaded.validatePosition();
+        if(problem!=null) throw new IllegalArgumentException("Invalid position: "+problem);
+        board=loaded;
+        current=board.getSideToMove()==Color.WHITE ? white : black;
+        historySize=0;
+        gameOver=false;
+        positionCounts.clear();
+        positionCounts.put(board.getHash(), 1);
+        if(journal != null){
+            try {
+                journal = journal.startOver(board.toFen());
+            } catch(java.io.UncheckedIOException e){
+                out.println("Cannot journal the new game: " + e.getMessage());
+                journal = null;
+            }
+        }
+        checkGameOver();
+        if(gameOver && journal != null) journal.finish();
+    }
+
+    public void displayBoard(){
+        if(differential) renderer.repaint(board, out); else renderer.render(board, out);
+    }
+
+    // Pins the board to the top of the terminal and from then on repaints only changed squares
+    public void setDifferentialDisplay(boolean on){
+        if(on == differential) return;
+        differential = on;
+        if(on) renderer.pin(board, out); else renderer.unpin(out);
+    }
+
+    // Differential frame with its top-left corner at a 1-based screen row and column, for clients
+    // that lay out several boards on one screen
+    public void repaintBoard(int row, int col){
+        renderer.setOrigin(row, col);
+        renderer.repaint(board, out);
+    }
+
+    // The next frame is drawn whole, e.g. after the screen was cleared
+    public void invalidateDisplay(){ renderer.invalidate(); }
+    public Board getBoard(){ return board; }
+    public Player getCurrentPlayer(){ return current; }
+    public boolean isGameOver(){ return gameOver; }
+    public void displayMoveHistory(){
+        out.println("\nMove History:");
+        for(int i=0;i<historySize;i++) out.println((i+1)+". "+Move.of(moveHistory[i]));
+    }
+
+    public void showLegalMoves(String square){
+        Position from=new Position(square);
+        if (!from.isValid()) { out.println("Invalid square."); return; }
+        Piece p=board.getPiece(from);
+        if(p==null){out.println("No piece at "+square); return;}
+        out.println("Legal moves for "+p.getClass().getSimpleName()+" at "+square+":");
+        boolean found = false;
+        if(p.getColor() == board.getSideToMove()) {
+            LegalMoveCache.Entry moves = legalMoves.get(board);
+            for(int i = moves.firstFrom(from.getSquare()), end = moves.endFrom(from.getSquare()); i < end; i++)
+                found |= printTarget(moves.get(i));
+        } else {
+            // The opponent's pieces, as if it were their turn
+            legal.clear();
+            board.generateLegalMoves(p.getColor(), legal);
+            for(int i = 0; i < legal.size(); i++)
+                if(Move.from(legal.get(i)) == from.getSquare()) found |= printTarget(legal.get(i));
+        }
+        if (!found) out.print("None");
+        out.println();
+    }
+
+    // One entry per target square: the promotion piece is chosen when the move is played
+    private boolean printTarget(int move) {
+        if (Move.isPromotion(move) && Move.promotionType(move) != Piece.QUEEN) return false;
+        out.print(Position.of(Move.to(move))+" ");
+        return true;
+    }
+}
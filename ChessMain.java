@@ -1,574 +1,144 @@
 import java.util.*;
 
-// Abstract base class for all chess pieces
-abstract class Piece {
-    protected Color color;
-    protected Position position;
-    protected boolean hasMoved;
-
-    public Piece(Color color, Position position) {
-        this.color = color;
-        this.position = position;
-        this.hasMoved = false;
-    }
-
-    public abstract boolean isValidMove(Position from, Position to, Board board);
-    public abstract String getSymbol();
-    public Color getColor() { return color; }
-    public Position getPosition() { return position; }
-    public boolean hasMoved() { return hasMoved; }
-    public void setPosition(Position position) { this.position = position; this.hasMoved = true; }
-
-    protected boolean isPathClear(Position from, Position to, Board board) {
-        int deltaRow = Integer.compare(to.getRow() - from.getRow(), 0);
-        int deltaCol = Integer.compare(to.getCol() - from.getCol(), 0);
-        int currentRow = from.getRow() + deltaRow;
-        int currentCol = from.getCol() + deltaCol;
-        while (currentRow != to.getRow() || currentCol != to.getCol()) {
-            if (board.getPiece(new Position(currentRow, currentCol)) != null) return false;
-            currentRow += deltaRow;
-            currentCol += deltaCol;
-        }
-        return true;
-    }
-}
-
-// Enum for piece colors
-enum Color {
-    WHITE, BLACK;
-    public Color opposite() { return this == WHITE ? BLACK : WHITE; }
-}
-
-// Position class
-class Position {
-    private int row, col;
-    public Position(int row, int col) { this.row = row; this.col = col; }
-    public Position(String notation) {
-        if (notation == null || notation.length() != 2) {
-             this.row = -1; this.col = -1; return;
-        }
-        this.col = notation.charAt(0) - 'a';
-        this.row = 8 - (notation.charAt(1) - '0');
-    }
-    public int getRow() { return row; }
-    public int getCol() { return col; }
-    public boolean isValid() { return row >= 0 && row < 8 && col >= 0 && col < 8; }
-    @Override
-    public boolean equals(Object obj) {
-        if (this == obj) return true;
-        if (obj == null || getClass() != obj.getClass()) return false;
-        Position p = (Position)obj;
-        return row == p.row && col == p.col;
-    }
-    @Override
-    public String toString() { return "" + (char)('a' + col) + (8 - row); }
-}
-
-// Pawn
-class Pawn extends Piece {
-    public boolean justMovedTwo = false; // For en passant
-    public Pawn(Color color, Position pos) { super(color, pos); }
-
-    @Override
-    public boolean isValidMove(Position from, Position to, Board board) {
-        int dir = color == Color.WHITE ? -1 : 1;
-        int rowDiff = to.getRow() - from.getRow();
-        int colDiff = to.getCol() - from.getCol();
-
-        // Normal move
-        if (colDiff == 0) {
-            if (rowDiff == dir && board.getPiece(to) == null) return true;
-            if (!hasMoved && rowDiff == 2 * dir) {
-                Position mid = new Position(from.getRow() + dir, from.getCol());
-                return board.getPiece(to) == null && board.getPiece(mid) == null;
-            }
-        }
-        // Capture
-        if (Math.abs(colDiff) == 1 && rowDiff == dir) {
-            Piece target = board.getPiece(to);
-            if (target != null && target.getColor() != color) return true;
-            // En passant
-            Piece sidePawn = board.getPiece(new Position(from.getRow(), to.getCol()));
-            if (sidePawn instanceof Pawn && sidePawn.getColor() != color && ((Pawn)sidePawn).justMovedTwo)
-                return true;
-        }
-        return false;
-    }
-
-    public String getSymbol() {
-        return color == Color.WHITE ? "P" : "p";
-    }
-}
-
-// Rook
-class Rook extends Piece {
-    public Rook(Color color, Position pos) { super(color, pos); }
-    @Override
-    public boolean isValidMove(Position from, Position to, Board board) {
-        if (from.getRow() != to.getRow() && from.getCol() != to.getCol()) return false;
-        return isPathClear(from, to, board);
-    }
-    @Override
-    public String getSymbol() {
-        return color == Color.WHITE ? "R" : "r";
-    }
-}
-
-// Knight
-class Knight extends Piece {
-    public Knight(Color color, Position pos) { super(color, pos); }
-    @Override
-    public boolean isValidMove(Position from, Position to, Board board) {
-        int r = Math.abs(to.getRow() - from.getRow());
-        int c = Math.abs(to.getCol() - from.getCol());
-        return (r == 2 && c == 1) || (r == 1 && c == 2);
-    }
-    @Override
-    public String getSymbol() {
-        return color == Color.WHITE ? "N" : "n";
-    }
-}
-
-// Bishop
-class Bishop extends Piece {
-    public Bishop(Color color, Position pos) { super(color, pos); }
-    @Override
-    public boolean isValidMove(Position from, Position to, Board board) {
-        int r = Math.abs(to.getRow() - from.getRow());
-        int c = Math.abs(to.getCol() - from.getCol());
-        if (r != c) return false;
-        return isPathClear(from, to, board);
-    }
-    @Override
-    public String getSymbol() {
-        return color == Color.WHITE ? "B" : "b";
-    }
-}
-
-// Queen
-class Queen extends Piece {
-    public Queen(Color color, Position pos) { super(color, pos); }
-    @Override
-    public boolean isValidMove(Position from, Position to, Board board) {
-        int r = Math.abs(to.getRow() - from.getRow());
-        int c = Math.abs(to.getCol() - from.getCol());
-        boolean rookMove = from.getRow() == to.getRow() || from.getCol() == to.getCol();
-        boolean bishopMove = r == c;
-        if (!rookMove && !bishopMove) return false;
-        return isPathClear(from, to, board);
-    }
-    @Override
-    public String getSymbol() {
-        return color == Color.WHITE ? "Q" : "q";
-    }
-}
-
-// King
-class King extends Piece {
-    public King(Color color, Position pos) { super(color, pos); }
-
-    @Override
-    public boolean isValidMove(Position from, Position to, Board board) {
-        int rDiff = Math.abs(to.getRow() - from.getRow());
-        int cDiff = Math.abs(to.getCol() - from.getCol());
-        
-        // Normal one-step move
-        if (rDiff <= 1 && cDiff <= 1) {
-            return true;
-        }
-
-        // Castling
-        if (!hasMoved && rDiff == 0 && cDiff == 2) {
-            int row = from.getRow();
-            // Determine if it's kingside or queenside based on destination column
-            int rookCol = (to.getCol() > from.getCol()) ? 7 : 0;
-            Position rookPos = new Position(row, rookCol);
-            Piece rook = board.getPiece(rookPos);
-
-            if (rook instanceof Rook && !rook.hasMoved()) {
-                // Check if the path between king and rook is clear
-                int step = (rookCol > from.getCol()) ? 1 : -1;
-                for (int i = from.getCol() + step; i != rookCol; i += step) {
-                    if (board.getPiece(new Position(row, i)) != null) {
-                        return false; // Path is blocked
-                    }
-                }
-                return true;
-            }
-        }
-        return false;
-    }
-
-    @Override
-    public String getSymbol() {
-        return color == Color.WHITE ? "K" : "k";
-    }
-}
-
-// Board
-class Board {
-    private Piece[][] board = new Piece[8][8];
-    private Move lastMove = null;
-
-    // ANSI escape codes
-    public static final String RESET = "\u001B[0m";
-    public static final String WHITE_PIECE = "\u001B[97m";   // bright white
-    public static final String BLACK_PIECE = "\u001B[33m";   // yellow
-    public static final String BG_LIGHT = "\u001B[47m";      // light square
-    public static final String BG_DARK = "\u001B[40m";       // dark square
-    public static final String BG_HIGHLIGHT = "\u001B[42m";  // green
-    public static final String BG_LAST_MOVE = "\u001B[44m";  // blue
-
-    public Board() { initializeBoard(); }
-
-    private void initializeBoard() {
-        for (int col = 0; col < 8; col++) {
-            board[1][col] = new Pawn(Color.BLACK, new Position(1, col));
-            board[6][col] = new Pawn(Color.WHITE, new Position(6, col));
-        }
-        Piece[] blacks = {
-            new Rook(Color.BLACK,new Position(0,0)), new Knight(Color.BLACK,new Position(0,1)),
-            new Bishop(Color.BLACK,new Position(0,2)), new Queen(Color.BLACK,new Position(0,3)),
-            new King(Color.BLACK,new Position(0,4)), new Bishop(Color.BLACK,new Position(0,5)),
-            new Knight(Color.BLACK,new Position(0,6)), new Rook(Color.BLACK,new Position(0,7))
-        };
-        Piece[] whites = {
-            new Rook(Color.WHITE,new Position(7,0)), new Knight(Color.WHITE,new Position(7,1)),
-            new Bishop(Color.WHITE,new Position(7,2)), new Queen(Color.WHITE,new Position(7,3)),
-            new King(Color.WHITE,new Position(7,4)), new Bishop(Color.WHITE,new Position(7,5)),
-            new Knight(Color.WHITE,new Position(7,6)), new Rook(Color.WHITE,new Position(7,7))
-        };
-        for (int i=0;i<8;i++){ board[0][i]=blacks[i]; board[7][i]=whites[i]; }
-    }
-
-    public Piece getPiece(Position p){ return p.isValid()? board[p.getRow()][p.getCol()] : null; }
-    public void setPiece(Position p, Piece piece){
-        if(!p.isValid()) return;
-        board[p.getRow()][p.getCol()] = piece;
-        if(piece!=null) piece.setPosition(p);
-    }
-    public void removePiece(Position p){ if(p.isValid()) board[p.getRow()][p.getCol()]=null; }
-    public void setLastMove(Move m){ lastMove = m; }
-
-    // In Board.java
-
-    public void displayBoard() {
-        System.out.println("   a  b  c  d  e  f  g  h");
-        System.out.println(" --------------------------");
-        for (int r = 0; r < 8; r++) {
-            System.out.print((8 - r) + " |");
-            for (int c = 0; c < 8; c++) {
-                Position currentPos = new Position(r, c);
-                Piece p = board[r][c];
-
-                // Choose background (checkerboard)
-                boolean lightSquare = (r + c) % 2 == 0;
-                String bg = lightSquare ? BG_LIGHT : BG_DARK;
-
-                // Highlight last move
-                if (lastMove != null && (currentPos.equals(lastMove.getFrom()) || currentPos.equals(lastMove.getTo()))) {
-                    bg = BG_HIGHLIGHT;
-                }
-
-                // Piece color
-                String pieceColor = (p == null) ? "" :
-                    (p.getColor() == Color.WHITE ? WHITE_PIECE : BLACK_PIECE);
-
-                String symbol = (p == null) ? "." : p.getSymbol();
-
-                System.out.print(bg + pieceColor + " " + symbol + " " + RESET);
-            }
-            System.out.println("| " + (8 - r));
-        }
-        System.out.println(" --------------------------");
-        System.out.println("   a  b  c  d  e  f  g  h");
-    }
-
-
-    public boolean isInCheck(Color color){
-        Position kingPos = findKing(color);
-        if(kingPos==null) return false;
-        for(int r=0;r<8;r++) {
-            for(int c=0;c<8;c++){
-                Piece p = board[r][c];
-                if(p!=null && p.getColor() != color) {
-                    if (p.isValidMove(p.getPosition(), kingPos, this)) {
-                         // Special check for pawn captures as isValidMove is different
-                        if (p instanceof Pawn) {
-                             if (Math.abs(p.getPosition().getCol() - kingPos.getCol()) == 1) {
-                                return true;
-                             }
-                        } else {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    private Position findKing(Color color){
-        for(int r=0;r<8;r++)
-            for(int c=0;c<8;c++){
-                Piece p = board[r][c];
-                if(p instanceof King && p.getColor()==color) return p.getPosition();
-            }
-        return null;
-    }
-
-    public List<Move> getAllLegalMoves(Color color){
-        List<Move> moves = new ArrayList<>();
-        for(int r=0;r<8;r++){
-            for(int c=0;c<8;c++){
-                Piece p = board[r][c];
-                if(p!=null && p.getColor()==color){
-                    Position from = p.getPosition();
-                    for(int r2=0;r2<8;r2++){
-                        for(int c2=0;c2<8;c2++){
-                            Position to = new Position(r2,c2);
-                            Piece captured = getPiece(to);
-                            if (captured != null && captured.getColor() == color) continue;
-
-                            if(p.isValidMove(from, to, this)){
-                                boolean wasMoved = p.hasMoved();
-                                setPiece(to,p); removePiece(from);
-                                if(!isInCheck(color)) {
-                                    moves.add(new Move(from,to));
-                                }
-                                // Undo move
-                                setPiece(from,p); setPiece(to,captured);
-                                p.hasMoved = wasMoved;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return moves;
-    }
-}
-
-// Move
-class Move {
-    private Position from,to; private Piece captured;
-    public Move(Position from,Position to){ this.from=from; this.to=to;}
-    public Position getFrom(){return from;} public Position getTo(){return to;}
-    public Piece getCapturedPiece(){return captured;}
-    public void setCapturedPiece(Piece p){captured=p;}
-    @Override public String toString(){ return from+" to "+to; }
-}
-
-// Player
-class Player {
-    private String name; private Color color;
-    public Player(String name, Color color){ this.name=name; this.color=color;}
-    public String getName(){return name;} public Color getColor(){return color;}
-}
-
-// ChessGame
-class ChessGame {
-    private Board board;
-    private Player white, black, current;
-    private List<Move> moveHistory;
-    private boolean gameOver;
-
-    public ChessGame(String whiteName,String blackName){
-        board=new Board();
-        white=new Player(whiteName,Color.WHITE);
-        black=new Player(blackName,Color.BLACK);
-        current=white; moveHistory=new ArrayList<>();
-        gameOver=false;
-    }
-
-    public boolean makeMove(String fromNotation, String toNotation){
-        if(gameOver){System.out.println("Game over!"); return false;}
-        Position from=new Position(fromNotation);
-        Position to=new Position(toNotation);
-        if(!from.isValid()||!to.isValid()){System.out.println("Invalid position!"); return false;}
-        Piece p=board.getPiece(from);
-        if(p==null){System.out.println("No piece at "+fromNotation); return false;}
-        if(p.getColor()!=current.getColor()){System.out.println("Not your piece!"); return false;}
+// Main
+public class ChessMain {
+    private static final long DEFAULT_ENGINE_MILLIS = 2000;
 
-        // Check for special castling rules before isValidMove for piece
-        if (p instanceof King && Math.abs(from.getCol() - to.getCol()) == 2) {
-            if (!handleCastlingValidation(p, from, to)) {
-                return false;
+    public static void main(String[] args){
+        if(args.length > 0 && args[0].equals("--uci")){ Uci.run(); return; }
+        if(args.length > 0 && args[0].equals("perft")){ Perft.run(args); return; }
+        if(args.length > 0 && args[0].equals("bench")){ Benchmarks.run(args); return; }
+        if(args.length > 0 && args[0].equals("smp")){ ParallelSearch.run(args); return; }
+        if(args.length > 0 && args[0].equals("server")){ GameServer.run(args); return; }
+        if(args.length > 0 && args[0].equals("import")){ Importer.run(args); return; }
+        if(args.length > 0 && args[0].equals("book")){ Book.run(args); return; }
+        if(args.length > 0 && args[0].equals("tb")){ Tablebases.run(args); return; }
+        if(args.length > 0 && args[0].equals("selfplay")){ SelfPlay.run(args); return; }
+        if(args.length > 0 && args[0].equals("check")){ Checks.run(args); return; }
+        if(args.length > 0 && args[0].equals("solve")){ Solver.run(args); return; }
+        if(args.length > 1 && args[0].equals("journal") && (args[1].equals("list") || args[1].equals("export"))){
+            GameJournal.run(args);
+            return;
+        }
+
+        // [diff] [journal <file>], or engine <white|black|both> [milliseconds per move] [hash <MB>] [threads <n>]
+        //     [book <file.bin>] [tb <dir>] [nnue <file>] [diff] [journal <file>]
+        Set<Color> engineColors = EnumSet.noneOf(Color.class);
+        boolean engineGame = args.length > 0 && args[0].equals("engine"), differential = false, usage = false;
+        long engineMillis = DEFAULT_ENGINE_MILLIS;
+        int hashMb = TranspositionTable.DEFAULT_MB, threads = 1;
+        String bookFile = null, tbDir = null, netFile = null, journalFile = null;
+        if(engineGame){
+            String side = args.length > 1 ? args[1].toLowerCase() : "black";
+            if(side.equals("white") || side.equals("both")) engineColors.add(Color.WHITE);
+            if(side.equals("black") || side.equals("both")) engineColors.add(Color.BLACK);
+        }
+        try {
+            for(int i = engineGame ? 2 : 0; i < args.length; i++){
+                if(args[i].equals("hash") && i + 1 < args.length) hashMb = Integer.parseInt(args[++i]);
+                else if(args[i].equals("threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+                else if(args[i].equals("book") && i + 1 < args.length) bookFile = args[++i];
+                else if(args[i].equals("tb") && i + 1 < args.length) tbDir = args[++i];
+                else if(args[i].equals("nnue") && i + 1 < args.length) netFile = args[++i];
+                else if(args[i].equals("journal") && i + 1 < args.length) journalFile = args[++i];
+                else if(args[i].equals("diff")) differential = true;
+                else if(engineGame) engineMillis = Long.parseLong(args[i]);
+                else usage = true;
             }
-        }
-
-        if(!p.isValidMove(from,to,board)){System.out.println("Invalid move for "+p.getClass().getSimpleName()); return false;}
-
-        Piece captured = board.getPiece(to);
-        boolean wasPieceMoved = p.hasMoved();
-        boolean wasCapturedPieceMoved = (captured != null) && captured.hasMoved();
-
-        // Handle special moves execution
-        if(p instanceof Pawn && Math.abs(from.getCol()-to.getCol())==1 && captured==null){
-            Position ep = new Position(from.getRow(), to.getCol());
-            captured = board.getPiece(ep); board.removePiece(ep);
-        } else if (p instanceof King && Math.abs(from.getCol()-to.getCol())==2){
-            handleCastlingExecution(from, to);
-        }
-
-        // Make the move
-        Move move = new Move(from,to);
-        move.setCapturedPiece(captured);
-        board.removePiece(from);
-        board.setPiece(to,p);
-
-        // Check if the move puts the king in check
-        if(board.isInCheck(current.getColor())){
-            System.out.println("Invalid move: You would be in check!");
-            // Undo move
-            board.setPiece(from,p);
-            p.hasMoved = wasPieceMoved;
-            board.setPiece(to,captured);
-            if (captured != null) {
-                captured.hasMoved = wasCapturedPieceMoved;
+        } catch(NumberFormatException e){
+            usage = true;
+        }
+        if(usage || (engineGame && engineColors.isEmpty()) || threads < 1){
+            System.out.println("Usage: java ChessMain [diff] [journal <file>]");
+            System.out.println("       java ChessMain engine <white|black|both> [milliseconds per move] [hash <MB>] [threads <n>] [book <file.bin>] [tb <dir>] [nnue <file>] [diff] [journal <file>]");
+            return;
+        }
+        Book book = null;
+        if(bookFile != null){
+            try {
+                book = new Book(java.nio.file.Paths.get(bookFile));
+            } catch(java.io.IOException e){
+                System.out.println("Cannot open book " + bookFile + ": " + e.getMessage());
+                return;
             }
-            return false;
-        }
-
-        // Handle post-move logic if move is legal
-        handlePawnPromotion(p, to);
-        updateEnPassantStatus(p, from, to);
-
-        moveHistory.add(move);
-        board.setLastMove(move);
-        switchPlayer();
-        checkGameOver();
-        return true;
-    }
-
-    private boolean handleCastlingValidation(Piece king, Position from, Position to) {
-        if (board.isInCheck(current.getColor())) {
-            System.out.println("Invalid move: Cannot castle while in check!");
-            return false;
         }
-        int step = (to.getCol() > from.getCol()) ? 1 : -1;
-        for (int c = from.getCol() + step; c != to.getCol() + step; c += step) {
-            Position pathPos = new Position(from.getRow(), c);
-            Piece originalPiece = board.getPiece(pathPos); // Should be null
-            board.removePiece(from);
-            board.setPiece(pathPos, king);
-            if (board.isInCheck(current.getColor())) {
-                board.setPiece(from, king); board.setPiece(pathPos, originalPiece);
-                System.out.println("Invalid move: Cannot castle through or into an attacked square!");
-                return false;
+        Tablebases tablebases = null;
+        if(tbDir != null){
+            try {
+                tablebases = new Tablebases(java.nio.file.Paths.get(tbDir));
+            } catch(java.io.IOException e){
+                System.out.println("Cannot open tablebases in " + tbDir + ": " + e.getMessage());
+                return;
             }
-            board.setPiece(from, king); board.setPiece(pathPos, originalPiece);
-        }
-        return true;
-    }
-
-    private void handleCastlingExecution(Position from, Position to) {
-        int row = from.getRow();
-        if(to.getCol()==6){ // king side
-            Piece rook = board.getPiece(new Position(row,7));
-            board.removePiece(new Position(row,7));
-            board.setPiece(new Position(row,5),rook);
-        } else { // queen side
-            Piece rook = board.getPiece(new Position(row,0));
-            board.removePiece(new Position(row,0));
-            board.setPiece(new Position(row,3),rook);
         }
-    }
-    
-    private void handlePawnPromotion(Piece p, Position to) {
-        if (p instanceof Pawn && (to.getRow() == 0 || to.getRow() == 7)) {
-            Scanner scanner = new Scanner(System.in);
-            System.out.print("Pawn promotion! Choose piece (Q, R, B, N): ");
-            String choice = scanner.nextLine().trim().toUpperCase();
-
-            Piece promoted;
-            switch (choice) {
-                case "R": 
-                    promoted = new Rook(p.getColor(), to);
-                    break;
-                case "B": 
-                    promoted = new Bishop(p.getColor(), to);
-                    break;
-                case "N": 
-                    promoted = new Knight(p.getColor(), to);
-                    break;
-                default: // default to Queen if input invalid
-                    promoted = new Queen(p.getColor(), to);
-                    break;
+        Nnue network = null;
+        if(netFile != null){
+            try {
+                network = Nnue.load(java.nio.file.Paths.get(netFile));
+            } catch(java.io.IOException e){
+                System.out.println("Cannot load network " + netFile + ": " + e.getMessage());
+                return;
             }
-            board.setPiece(to, promoted);
-            System.out.println("Pawn promoted to " + promoted.getClass().getSimpleName() + "!");
         }
-    }
+        Random random = new Random();
 
-
-    private void updateEnPassantStatus(Piece p, Position from, Position to) {
-        for(int r=0;r<8;r++)
-            for(int c=0;c<8;c++) {
-                Piece piece = board.getPiece(new Position(r,c));
-                if(piece instanceof Pawn)
-                    ((Pawn)piece).justMovedTwo=false;
+        Scanner scanner=new Scanner(System.in);
+        String whiteName = engineColors.contains(Color.WHITE) ? "Engine (White)" : "Player 1 (White)";
+        String blackName = engineColors.contains(Color.BLACK) ? "Engine (Black)" : "Player 2 (Black)";
+        ChessGame game=new ChessGame(whiteName, blackName, System.out, scanner);
+        GameJournal journal = null;
+        String journalNote = null;
+        if(journalFile != null){
+            try {
+                journal = new GameJournal(java.nio.file.Paths.get(journalFile), GameJournal.DEFAULT_SYNC_MILLIS);
+                journalNote = resumeOrStart(game, journal, whiteName, blackName);
+            } catch(java.io.IOException e){
+                System.out.println("Cannot open journal " + journalFile + ": " + e.getMessage());
+                return;
             }
-        if(p instanceof Pawn && Math.abs(from.getRow()-to.getRow())==2)
-            ((Pawn)p).justMovedTwo=true;
-    }
-
-    private void switchPlayer(){ current = (current==white) ? black:white; }
-    
-    private void checkGameOver(){
-        boolean inCheck=board.isInCheck(current.getColor());
-        List<Move> legal=board.getAllLegalMoves(current.getColor());
-        if(legal.isEmpty()){
-            gameOver=true;
-            if(inCheck) System.out.println("Checkmate! "+ current.getColor().opposite() +" wins!");
-            else System.out.println("Stalemate! Draw!");
-        } else if (inCheck) {
-            System.out.println(current.getName() + " is in check!");
         }
-    }
-
-    public void displayBoard(){ board.displayBoard(); }
-    public Player getCurrentPlayer(){ return current; }
-    public boolean isGameOver(){ return gameOver; }
-    public void displayMoveHistory(){
-        System.out.println("\nMove History:");
-        for(int i=0;i<moveHistory.size();i++) System.out.println((i+1)+". "+moveHistory.get(i));
-    }
-
-    public void showLegalMoves(String square){
-        Position from=new Position(square);
-        if (!from.isValid()) { System.out.println("Invalid square."); return; }
-        Piece p=board.getPiece(from);
-        if(p==null){System.out.println("No piece at "+square); return;}
-        System.out.println("Legal moves for "+p.getClass().getSimpleName()+" at "+square+":");
-        List<Move> allMoves = board.getAllLegalMoves(p.getColor());
-        boolean found = false;
-        for(Move m: allMoves) {
-            if(m.getFrom().equals(from)) {
-                System.out.print(m.getTo()+" ");
-                found = true;
-            }
+        ParallelSearch engine=engineColors.isEmpty() ? null : new ParallelSearch(new TranspositionTable(hashMb), threads);
+        if(engine != null){
+            engine.setTablebases(tablebases);
+            engine.setNetwork(network);
         }
-        if (!found) System.out.print("None");
-        System.out.println();
-    }
-}
-
-// Main
-public class ChessMain {
-    public static void main(String[] args){
-        ChessGame game=new ChessGame("Player 1 (White)","Player 2 (Black)");
-        Scanner scanner=new Scanner(System.in);
+        game.setDifferentialDisplay(differential);
         System.out.println("Chess Game Started!");
         System.out.println("Enter moves like: e2 e4");
-        System.out.println("Commands: 'quit', 'history', 'legal e2'");
+        System.out.println("Commands: 'quit', 'history', 'legal e2', 'fen', 'fen <FEN>', 'board', 'stats'");
+        if(journalNote != null) System.out.println(journalNote);
 
+        // The board is drawn again only when the position changed or on request
+        boolean redraw = true;
         while(!game.isGameOver()){
-            game.displayBoard();
+            if(redraw) game.displayBoard();
+            redraw = false;
+            if(engineColors.contains(game.getCurrentPlayer().getColor())){
+                if(!playBookMove(game, book, random)) playEngineMove(game, engine, engineMillis);
+                redraw = true;
+                continue;
+            }
             System.out.print("\n"+game.getCurrentPlayer().getName()+"'s turn: ");
-            String input=scanner.nextLine().trim().toLowerCase();
-            if(input.equals("quit")) break;
+            if(!scanner.hasNextLine()) break;
+            String line=scanner.nextLine().trim();
+            String input=line.toLowerCase();
+            if(input.equals("quit")){
+                if(game.getJournal() != null) game.getJournal().finish();   // ended on purpose: not resumed
+                break;
+            }
             else if(input.equals("history")){ game.displayMoveHistory(); continue; }
+            else if(input.equals("fen")){ System.out.println(game.getBoard().toFen()); continue; }
+            else if(input.equals("stats")){ Stats.print(System.out); continue; }
+            else if(input.equals("board")){ game.invalidateDisplay(); redraw = true; continue; }
+            else if(input.startsWith("fen ")){
+                try {
+                    game.loadFen(line.substring(4));
+                    redraw = true;
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                }
+                continue;
+            }
             else if(input.startsWith("legal ")){
                 if (input.length() > 6) {
                     game.showLegalMoves(input.substring(6).trim());
@@ -580,13 +150,64 @@ public class ChessMain {
 
             String[] parts=input.split(" ");
             if(parts.length==2) {
-                if(!game.makeMove(parts[0],parts[1])) {
-                    System.out.println("Move failed, please try again.");
-                }
+                if(game.makeMove(parts[0],parts[1])) redraw = true;
+                else System.out.println("Move failed, please try again.");
             }
             else System.out.println("Invalid input! Please use the format 'e2 e4'.");
         }
+        if(redraw) game.displayBoard();   // the final position
+        game.setDifferentialDisplay(false);
         scanner.close();
+        if(engine != null) engine.shutdown();
+        if(journal != null) journal.close();
         System.out.println("Game Over!");
     }
-}
\ No newline at end of file
+
+    // Continues the newest interrupted game in the journal, or starts recording a new one
+    private static String resumeOrStart(ChessGame game, GameJournal journal, String whiteName, String blackName)
+            throws java.io.IOException {
+        List<GameJournal.Record> interrupted = journal.interrupted();
+        if(interrupted.isEmpty()){
+            game.setJournal(journal.create(whiteName, blackName, game.getBoard().toFen()));
+            return "Recording to journal game " + game.getJournal().getId();
+        }
+        GameJournal.Record record = interrupted.get(interrupted.size() - 1);
+        try {
+            if(!record.fen.equals(Board.START_FEN)) game.loadFen(record.fen);
+        } catch(IllegalArgumentException e){
+            throw new java.io.IOException("game " + record.id + " has a bad start position: " + e.getMessage());
+        }
+        int played = game.replay(record.moves);
+        game.setJournal(journal.resume(record, played));
+        if(game.isGameOver()) game.getJournal().finish();
+        return "Resumed journal game " + record.id + " after " + played + " moves"
+            + (played < record.moves.length ? " (" + (record.moves.length - played) + " unreadable moves dropped)" : "");
+    }
+
+    // Plays a weighted random book move if the position is in the book
+    private static boolean playBookMove(ChessGame game, Book book, Random random){
+        if(book == null) return false;
+        int move = book.pick(game.getBoard(), random);
+        if(move == 0) return false;
+        System.out.printf("%n%s plays %s (book)%n", game.getCurrentPlayer().getName(), Move.notation(move));
+        game.makeMove(Position.of(Move.from(move)).toString(), Position.of(Move.to(move)).toString(),
+            Move.isPromotion(move) ? Move.promotionType(move) : Piece.QUEEN);
+        return true;
+    }
+
+    private static void playEngineMove(ChessGame game, ParallelSearch engine, long millis){
+        int[] last = new int[2];   // depth, score of the last completed iteration
+        long start = System.nanoTime();
+        int move = engine.search(game.getBoard(), Search.MAX_PLY, millis, (depth, score, nodes, elapsed, pv, pvLength) -> {
+            last[0] = depth; last[1] = score;
+        });
+        long elapsed = Math.max(System.nanoTime() - start, 1);
+        String from = Position.of(Move.from(move)).toString(), to = Position.of(Move.to(move)).toString();
+        TranspositionTable tt = engine.getTranspositionTable();
+        System.out.printf("%n%s plays %s (depth %d, score %+.2f, %d nodes, %.2f s, %.0f nodes/s, hash hits %.1f%%, hash full %.1f%%)%n",
+            game.getCurrentPlayer().getName(), Move.notation(move), last[0], last[1] / 100.0,
+            engine.getNodes(), elapsed / 1e9, engine.getNodes() / (elapsed / 1e9),
+            tt.getHitRate() * 100, tt.getFillRate() * 100);
+        game.makeMove(from, to, Move.isPromotion(move) ? Move.promotionType(move) : Piece.QUEEN);
+    }
+}
@@ -0,0 +1,5 @@
+// Enum for piece colors
+enum Color {
+    WHITE, BLACK;
+    public Color opposite() { return this == WHITE ? BLACK : WHITE; }
+}
@@ -0,0 +1,423 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Durable move history for any number of games in one append-only file. The file is a sequence of
+// 512-byte blocks, memory-mapped 4 MB at a time. Block 0 identifies the file; every other block
+// belongs to one game and starts with the game id and the block's sequence number in that game.
+// A game's block 0 holds its header (creation time, both player names and the start FEN); its
+// later blocks hold the packed moves, two bytes each, 248 per block.
+//
+// Recording a move is a store into the mapping, with no system call: the kernel keeps the data if
+// the process dies, and a background thread forces the file to disk every syncMillis so a machine
+// crash loses at most that much. Because all games share the file, one force covers every game
+// that moved since the last one, however many there are.
+//
+// A move of 0 (a8 to a8) ends the recorded moves and 0xFFFF marks a game that ended, so games
+// without it were interrupted and can be resumed by replaying their moves. Replay stops at the
+// first move that is not legal, which also discards a half-written last move.
+final class GameJournal implements Closeable {
+    private static final int MAGIC = 0x43474A32;   // "CGJ2"
+    private static final int END = 0xFFFF;
+    private static final int BLOCK = 512, BLOCK_HEADER = 16;   // game id, sequence number, unused
+    private static final int MOVES_PER_BLOCK = (BLOCK - BLOCK_HEADER) / 2;
+    private static final int REGION_BLOCKS = 8192;             // 4 MB mapped at a time
+    private static final int MAX_NAME = 64;
+    public static final long DEFAULT_SYNC_MILLIS = 1000;
+
+    private final Path path;
+    private final long syncMillis;
+    private final ScheduledExecutorService syncer;
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private volatile boolean changed;   // something was written since the last force
+    private int nextBlock;              // guarded by this
+    private long nextId;                // guarded by this
+
+    // Games are forced to disk every syncMillis; 0 forces after every move
+    public GameJournal(Path path, long syncMillis) throws IOException {
+        if (syncMillis < 0) throw new IllegalArgumentException("sync interval must not be negative");
+        this.path = path;
+        this.syncMillis = syncMillis;
+        boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+        if (!fresh && Files.size(path) % BLOCK != 0) throw new IOException(path + " is not a game journal");
+        int blocks = fresh ? 1 : (int) (Files.size(path) / BLOCK);
+        mapRegions(blocks);
+        if (fresh) {
+            buffer(0).putInt(0, MAGIC);
+            buffer(0).putInt(4, BLOCK);
+            changed = true;
+        } else if (buffer(0).getInt(0) != MAGIC || buffer(0).getInt(4) != BLOCK) {
+            throw new IOException(path + " is not a game journal");
+        }
+        // New blocks go after the last used one; new games get ids above every existing one
+        nextBlock = 1;
+        for (int b = 1; b < blocks; b++) {
+            long id = buffer(b).getLong(offset(b));
+            if (id == 0) continue;
+            nextBlock = b + 1;
+            nextId = Math.max(nextId, id);
+        }
+        nextId++;
+        if (syncMillis == 0) {
+            syncer = null;
+        } else {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // One game as read back from the file
+    static final class Record {
+        final long id, created;
+        final String white, black, fen;
+        final int[] moves;
+        final boolean finished;
+        private final int[] blocks;   // by sequence number
+
+        Record(long id, long created, String white, String black, String fen, int[] moves, boolean finished, int[] blocks) {
+            this.id = id; this.created = created;
+            this.white = white; this.black = black; this.fen = fen;
+            this.moves = moves; this.finished = finished; this.blocks = blocks;
+        }
+    }
+
+    // Appends the moves of one game. Used by one thread at a time, the game's owner.
+    final class Writer {
+        private final long id;
+        private final String white, black;
+        private int block = -1, seq, slot;   // current move block, its sequence number and moves in it
+        private int count;
+        private boolean finished;
+
+        private Writer(long id, String white, String black) {
+            this.id = id;
+            this.white = white;
+            this.black = black;
+        }
+
+        public long getId() { return id; }
+        public int size() { return count; }
+
+        public void append(int move) {
+            if (finished) throw new IllegalStateException("game " + id + " has ended");
+            put(move);
+            count++;
+        }
+
+        // Marks the game as ended and forces it to disk; it will not be resumed
+        public void finish() {
+            if (finished) return;
+            put(END);
+            finished = true;
+            if (syncMillis != 0) sync();
+        }
+
+        // Ends this game and starts a new one between the same players from another position
+        public Writer startOver(String fen) {
+            finish();
+            return create(white, black, fen);
+        }
+
+        private void put(int value) {
+            if (block < 0 || slot == MOVES_PER_BLOCK) {
+                block = allocate(id, ++seq);
+                slot = 0;
+            }
+            int at = offset(block) + BLOCK_HEADER + 2 * slot++;
+            MappedByteBuffer buf = buffer(block);
+            buf.putShort(at, (short) value);
+            written(buf, at, 2);
+        }
+    }
+
+    // Starts a new game
+    public Writer create(String white, String black, String fen) {
+        long id;
+        synchronized (this) {
+            id = nextId++;
+        }
+        white = white.length() > MAX_NAME ? white.substring(0, MAX_NAME) : white;
+        black = black.length() > MAX_NAME ? black.substring(0, MAX_NAME) : black;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream header = new DataOutputStream(bytes)) {
+            header.writeLong(System.currentTimeMillis());
+            header.writeUTF(white);
+            header.writeUTF(black);
+            header.writeUTF(fen);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // not thrown by an in-memory stream
+        }
+        if (bytes.size() > BLOCK - BLOCK_HEADER) throw new IllegalArgumentException("game header too long");
+        int block = allocate(id, 0);
+        MappedByteBuffer buf = buffer(block);
+        int at = offset(block) + BLOCK_HEADER;
+        buf.put(at, bytes.toByteArray());
+        written(buf, offset(block), BLOCK);
+        return new Writer(id, white, black);
+    }
+
+    // Continues an interrupted game after its first `played` moves, which the caller has replayed;
+    // anything recorded after them is erased
+    public Writer resume(Record record, int played) {
+        Writer writer = new Writer(record.id, record.white, record.black);
+        writer.count = played;
+        int seq = played / MOVES_PER_BLOCK + 1;
+        if (seq < record.blocks.length) {
+            writer.block = record.blocks[seq];
+            writer.seq = seq;
+            writer.slot = played % MOVES_PER_BLOCK;
+            MappedByteBuffer buf = buffer(writer.block);
+            int from = offset(writer.block) + BLOCK_HEADER + 2 * writer.slot, to = offset(writer.block) + BLOCK;
+            for (int i = from; i < to; i++) buf.put(i, (byte) 0);
+            written(buf, from, to - from);
+        } else {
+            writer.seq = record.blocks.length - 1;   // the next move starts a new block
+        }
+        // Later blocks are dropped from the game; their space is not reused
+        for (int s = seq + 1; s < record.blocks.length; s++) {
+            MappedByteBuffer buf = buffer(record.blocks[s]);
+            buf.putLong(offset(record.blocks[s]), 0);
+            written(buf, offset(record.blocks[s]), 8);
+        }
+        return writer;
+    }
+
+    // Forces everything written so far to disk
+    public void sync() {
+        if (!changed) return;
+        changed = false;
+        for (MappedByteBuffer buf : regions) buf.force();
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) syncer.shutdownNow();
+        sync();
+    }
+
+    private void written(MappedByteBuffer buf, int at, int length) {
+        if (syncMillis == 0) buf.force(at, length);
+        else changed = true;
+    }
+
+    // A fresh block for a game, its header written id last
+    private synchronized int allocate(long id, int seq) {
+        int block = nextBlock++;
+        if (block / REGION_BLOCKS >= regions.length) {
+            try {
+                mapRegions(block + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot grow journal " + path, e);
+            }
+        }
+        MappedByteBuffer buf = buffer(block);
+        buf.putInt(offset(block) + 8, seq);
+        buf.putLong(offset(block), id);
+        return block;
+    }
+
+    // Maps enough regions to hold the given number of blocks, growing the file. The channel is
+    // closed right away; the mappings stay valid.
+    private synchronized void mapRegions(int blocks) throws IOException {
+        int count = (blocks + REGION_BLOCKS - 1) / REGION_BLOCKS;
+        if (count <= regions.length) return;
+        MappedByteBuffer[] grown = Arrays.copyOf(regions, count);
+        long regionBytes = (long) REGION_BLOCKS * BLOCK;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int r = regions.length; r < count; r++) grown[r] = ch.map(FileChannel.MapMode.READ_WRITE, r * regionBytes, regionBytes);
+        }
+        regions = grown;
+    }
+
+    private MappedByteBuffer buffer(int block) { return regions[block / REGION_BLOCKS]; }
+    private static int offset(int block) { return (block % REGION_BLOCKS) * BLOCK; }
+
+    // Every game in the file, oldest first; games whose header block is missing are skipped
+    public List<Record> records() {
+        int used;
+        synchronized (this) {
+            used = nextBlock;
+        }
+        // Blocks of each game by sequence number
+        Map<Long, List<int[]>> games = new TreeMap<>();
+        for (int b = 1; b < used; b++) {
+            long id = buffer(b).getLong(offset(b));
+            if (id != 0) games.computeIfAbsent(id, k -> new ArrayList<>()).add(new int[] {buffer(b).getInt(offset(b) + 8), b});
+        }
+        List<Record> records = new ArrayList<>(games.size());
+        for (Map.Entry<Long, List<int[]>> game : games.entrySet()) {
+            List<int[]> list = game.getValue();
+            list.sort((x, y) -> Integer.compare(x[0], y[0]));
+            int n = 0;
+            while (n < list.size() && list.get(n)[0] == n) n++;   // stop at a missing block
+            if (n == 0) continue;
+            int[] blocks = new int[n];
+            for (int i = 0; i < n; i++) blocks[i] = list.get(i)[1];
+            Record r = read(game.getKey(), blocks);
+            if (r != null) records.add(r);
+        }
+        return records;
+    }
+
+    // Games without an end mark, oldest first
+    public List<Record> interrupted() {
+        List<Record> records = records();
+        records.removeIf(r -> r.finished);
+        return records;
+    }
+
+    private Record read(long id, int[] blocks) {
+        MappedByteBuffer buf = buffer(blocks[0]);
+        byte[] header = new byte[BLOCK - BLOCK_HEADER];
+        buf.get(offset(blocks[0]) + BLOCK_HEADER, header);
+        long created;
+        String white, black, fen;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(header))) {
+            created = in.readLong();
+            white = in.readUTF();
+            black = in.readUTF();
+            fen = in.readUTF();
+        } catch (IOException e) {
+            return null;   // damaged header
+        }
+        int[] moves = new int[(blocks.length - 1) * MOVES_PER_BLOCK];
+        int n = 0;
+        boolean finished = false;
+        scan:
+        for (int s = 1; s < blocks.length; s++) {
+            MappedByteBuffer b = buffer(blocks[s]);
+            for (int i = 0, at = offset(blocks[s]) + BLOCK_HEADER; i < MOVES_PER_BLOCK; i++, at += 2) {
+                int move = b.getShort(at) & 0xFFFF;
+                if (move == 0) break scan;
+                if (move == END) { finished = true; break scan; }
+                moves[n++] = move;
+            }
+        }
+        return new Record(id, created, white, black, fen, Arrays.copyOf(moves, n), finished, blocks);
+    }
+
+    // Writes every game as PGN, oldest first, each replayed up to its first illegal move; returns
+    // the number of games. Ended games get their result from the final position, others "*".
+    public int exportPgn(Appendable out) throws IOException {
+        DateTimeFormatter date = DateTimeFormatter.ofPattern("yyyy.MM.dd");
+        MoveList legal = new MoveList();
+        StringBuilder text = new StringBuilder(1024);
+        int games = 0;
+        for (Record r : records()) {
+            Board board;
+            try {
+                board = new Board(r.fen);
+            } catch (RuntimeException e) {
+                continue;   // damaged start position: nothing to export
+            }
+            text.setLength(0);
+            int lineStart = 0, number = board.getFullmoveNumber();
+            for (int i = 0; i < r.moves.length; i++) {
+                int move = r.moves[i];
+                legal.clear();
+                board.generateLegalMoves(board.getSideToMove(), legal);
+                if (!isLegal(move, legal)) break;
+                String token = board.getSideToMove() == Color.WHITE ? number + ". " + Pgn.toSan(board, move, legal)
+                    : i == 0 ? number + "... " + Pgn.toSan(board, move, legal) : Pgn.toSan(board, move, legal);
+                if (board.getSideToMove() == Color.BLACK) number++;
+                board.makeMove(move);
+                lineStart = appendWrapped(text, token, lineStart);
+            }
+            String result = r.finished ? result(board, legal) : "*";
+            appendWrapped(text, result, lineStart);
+
+            out.append("[Event \"Journal game ").append(Long.toString(r.id)).append("\"]\n");
+            out.append("[Site \"?\"]\n");
+            out.append("[Date \"").append(date.format(LocalDate.ofInstant(Instant.ofEpochMilli(r.created), ZoneId.systemDefault()))).append("\"]\n");
+            out.append("[Round \"-\"]\n");
+            out.append("[White \"").append(escape(r.white)).append("\"]\n");
+            out.append("[Black \"").append(escape(r.black)).append("\"]\n");
+            out.append("[Result \"").append(result).append("\"]\n");
+            if (!r.fen.equals(Board.START_FEN)) {
+                out.append("[SetUp \"1\"]\n");
+                out.append("[FEN \"").append(r.fen).append("\"]\n");
+            }
+            out.append('\n').append(text).append("\n\n");
+            games++;
+        }
+        return games;
+    }
+
+    private static boolean isLegal(int move, MoveList legal) {
+        for (int k = 0; k < legal.size(); k++) if (legal.get(k) == move) return true;
+        return false;
+    }
+
+    // Result of a game that ended, judged as ChessGame does: mate, stalemate or repetition
+    private static String result(Board board, MoveList legal) {
+        legal.clear();
+        board.generateLegalMoves(board.getSideToMove(), legal);
+        if (legal.size() == 0) {
+            if (!board.isInCheck(board.getSideToMove())) return "1/2-1/2";
+            return board.getSideToMove() == Color.WHITE ? "0-1" : "1-0";
+        }
+        return board.repetitionCount() >= 3 ? "1/2-1/2" : "*";
+    }
+
+    // Adds a token to the movetext, breaking lines before 80 columns; returns the current line's start
+    private static int appendWrapped(StringBuilder text, String token, int lineStart) {
+        if (text.length() > lineStart) {
+            if (text.length() - lineStart + 1 + token.length() > 79) {
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(' ');
+            }
+        }
+        text.append(token);
+        return lineStart;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // journal list <file>
+    // journal export <file> <out.pgn>
+    public static void run(String[] args) {
+        if (args.length < 3 || !(args[1].equals("list") && args.length == 3 || args[1].equals("export") && args.length == 4)) {
+            System.out.println("Usage: java ChessMain journal list <file>");
+            System.out.println("       java ChessMain journal export <file> <out.pgn>");
+            return;
+        }
+        Path file = Paths.get(args[2]);
+        if (!Files.isRegularFile(file)) {
+            System.out.println("No journal at " + file);
+            return;
+        }
+        try (GameJournal journal = new GameJournal(file, DEFAULT_SYNC_MILLIS)) {
+            if (args[1].equals("list")) {
+                for (Record r : journal.records()) {
+                    System.out.printf("%6d  %-20s %-20s %4d moves  %s%n", r.id, r.white, r.black, r.moves.length,
+                        r.finished ? "ended" : "interrupted");
+                }
+                return;
+            }
+            long start = System.nanoTime();
+            int games;
+            try (BufferedWriter out = Files.newBufferedWriter(Paths.get(args[3]), StandardCharsets.UTF_8)) {
+                games = journal.exportPgn(out);
+            }
+            double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+            System.out.printf("Exported %d games to %s in %.2f s (%.0f games/s)%n", games, args[3], seconds, games / seconds);
+        } catch (IOException e) {
+            System.out.println("Cannot read journal " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,491 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hosts many independent ChessGame sessions in one JVM. Each session writes to its own buffer
+// instead of the console, and each command runs as a task on a virtual thread (a small
+// platform thread pool on JDKs without them) under the session's lock, so one session is
+// never touched by two commands at once. Sessions idle for longer than the timeout are evicted.
+// Commands are accepted through execute() and through a line protocol on a loopback socket:
+//
+//   new                          -> session <id>
+//   <id> move e2 e4 [q|r|b|n]    <id> legal e2    <id> history    <id> board    <id> close
+//   <id> board diff <row> <col>
+//   metrics
+//
+// With a journal, every accepted move is recorded durably and games interrupted by a restart are
+// resumed under their old ids; closed, evicted and finished games are marked as ended.
+//
+// Every response ends with a line holding a single '.'. 'board diff' is for screens showing many
+// boards: it answers with ANSI cursor moves that repaint, at the given 1-based row and column,
+// only the squares changed since the session's last 'board diff' (the whole board the first time
+// or when the position on screen moves), and with nothing if the position is unchanged.
+final class GameServer {
+    public static final int DEFAULT_PORT = 7070;
+    public static final long DEFAULT_IDLE_SECONDS = 600;
+
+    private static final class Session {
+        final long id;
+        final ChessGame game;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastActive = System.nanoTime();
+
+        Session(long id) {
+            this.id = id;
+            this.game = new ChessGame("White", "Black", new PrintStream(buffer, false, StandardCharsets.UTF_8), null);
+        }
+
+        // The game is over for good: its journal is marked so it is not resumed
+        void end() {
+            if (game.getJournal() != null) game.getJournal().finish();
+        }
+
+        // Output written by the game since the last call
+        String drain() {
+            String text = buffer.toString(StandardCharsets.UTF_8);
+            buffer.reset();
+            return text;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ExecutorService workers = newWorkerExecutor();
+    private final ScheduledExecutorService evictor;
+    private final long idleNanos;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram validation = new LatencyHistogram();
+    private final long startNanos = System.nanoTime();
+    private long lastMetricsNanos = startNanos, lastMetricsMoves;
+
+    private volatile GameJournal journal;
+    private final List<String> skippedRecords = new ArrayList<>();
+    private volatile Thread endpoint;
+    private volatile Selector selector;
+
+    public GameServer(long idleSeconds) {
+        if (idleSeconds < 1) throw new IllegalArgumentException("idle timeout must be at least 1 second");
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, idleSeconds / 4);
+        evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.SECONDS);
+    }
+
+    // One virtual thread per task where the JDK has them (21+), else a pool sized to the machine
+    private static ExecutorService newWorkerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "session-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static boolean usesVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public long createSession() {
+        GameJournal j = journal;
+        if (j == null) {
+            long id = nextId.getAndIncrement();
+            sessions.put(id, new Session(id));
+            created.increment();
+            return id;
+        }
+        GameJournal.Writer writer = j.create("White", "Black", Board.START_FEN);
+        Session session = new Session(writer.getId());
+        session.game.setJournal(writer);
+        sessions.put(session.id, session);
+        created.increment();
+        return session.id;
+    }
+
+    // Records every game from now on in the journal, which also numbers new sessions, and resumes
+    // its interrupted games as sessions; returns how many were resumed. Call before serving.
+    public int setJournal(GameJournal journal) {
+        int resumed = 0;
+        for (GameJournal.Record record : journal.interrupted()) {
+            Session session = new Session(record.id);
+            try {
+                if (!record.fen.equals(Board.START_FEN)) session.game.loadFen(record.fen);
+            } catch (IllegalArgumentException e) {
+                skippedRecords.add("game " + record.id + " has a bad start position: " + e.getMessage());
+                continue;
+            }
+            int played = session.game.replay(record.moves);
+            session.game.setJournal(journal.resume(record, played));
+            session.drain();
+            if (session.game.isGameOver()) {
+                session.end();
+                continue;
+            }
+            sessions.put(session.id, session);
+            resumed++;
+        }
+        this.journal = journal;
+        return resumed;
+    }
+
+    public int getSessionCount() { return sessions.size(); }
+
+    // Why each interrupted journal game that setJournal() could not resume was left alone
+    public List<String> getSkippedRecords() { return skippedRecords; }
+
+    // Runs one session command ("move e2 e4 [q]", "legal e2", "history", "board", "close")
+    // and completes with its output. Commands for the same session run one at a time.
+    public CompletableFuture<String> execute(long id, String command) {
+        Session session = sessions.get(id);
+        if (session == null) return CompletableFuture.completedFuture("error: no session " + id + "\n");
+        return CompletableFuture.supplyAsync(() -> {
+            session.lock.lock();
+            try {
+                session.lastActive = System.nanoTime();
+                return apply(session, command.trim().toLowerCase().split("\\s+"));
+            } finally {
+                session.lock.unlock();
+            }
+        }, workers);
+    }
+
+    public CompletableFuture<String> move(long id, String from, String to, int promotionType) {
+        String piece = promotionType >= Piece.KNIGHT && promotionType <= Piece.QUEEN
+            ? " " + "nbrq".charAt(promotionType - Piece.KNIGHT) : "";
+        return execute(id, "move " + from + " " + to + piece);
+    }
+
+    private String apply(Session session, String[] tokens) {
+        ChessGame game = session.game;
+        switch (tokens[0]) {
+            case "move": {
+                if (tokens.length < 3 || tokens.length > 4) return "error: usage move <from> <to> [q|r|b|n]\n";
+                int promotion = Piece.QUEEN;
+                if (tokens.length == 4) {
+                    promotion = "nbrq".indexOf(tokens[3]) + Piece.KNIGHT;
+                    if (tokens[3].length() != 1 || promotion < Piece.KNIGHT) return "error: promotion must be q, r, b or n\n";
+                }
+                long start = System.nanoTime();
+                boolean ok = game.makeMove(tokens[1], tokens[2], promotion);
+                validation.record(System.nanoTime() - start);
+                if (ok) moves.increment(); else rejected.increment();
+                return session.drain() + (ok ? "ok\n" : "illegal\n");
+            }
+            case "legal":
+                if (tokens.length != 2) return "error: usage legal <square>\n";
+                game.showLegalMoves(tokens[1]);
+                return session.drain();
+            case "history":
+                game.displayMoveHistory();
+                return session.drain();
+            case "board":
+                if (tokens.length == 1) {
+                    game.displayBoard();
+                    return session.drain();
+                }
+                if (tokens.length != 4 || !tokens[1].equals("diff")) return "error: usage board [diff <row> <col>]\n";
+                try {
+                    int row = Integer.parseInt(tokens[2]), col = Integer.parseInt(tokens[3]);
+                    if (row < 1 || col < 1) return "error: row and column start at 1\n";
+                    game.repaintBoard(row, col);
+                } catch (NumberFormatException e) {
+                    return "error: usage board [diff <row> <col>]\n";
+                }
+                String frame = session.drain();
+                return frame.isEmpty() ? "" : frame + "\n";
+            case "close":
+                if (sessions.remove(session.id, session)) {
+                    closed.increment();
+                    session.end();
+                }
+                return "closed\n";
+            default:
+                return "error: unknown command " + tokens[0] + "\n";
+        }
+    }
+
+    // A busy session is never evicted; it is looked at again on the next pass
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Session s : sessions.values()) {
+            if (now - s.lastActive < idleNanos || !s.lock.tryLock()) continue;
+            try {
+                if (now - s.lastActive >= idleNanos && sessions.remove(s.id, s)) {
+                    evicted.increment();
+                    s.end();
+                }
+            } finally {
+                s.lock.unlock();
+            }
+        }
+    }
+
+    // Sessions, move throughput since the previous call and move validation latency
+    public synchronized String metrics() {
+        long now = System.nanoTime(), total = moves.sum();
+        double rate = (total - lastMetricsMoves) / Math.max(1e-9, (now - lastMetricsNanos) / 1e9);
+        lastMetricsNanos = now;
+        lastMetricsMoves = total;
+        return String.format("sessions %d (created %d, closed %d, evicted %d), moves %d (rejected %d), "
+                + "%.0f moves/s, validation p50 %.1f us, p99 %.1f us, max %.1f us%n",
+            sessions.size(), created.sum(), closed.sum(), evicted.sum(), total, rejected.sum(), rate,
+            validation.getPercentile(50) / 1e3, validation.getPercentile(99) / 1e3, validation.getPercentile(100) / 1e3);
+    }
+
+    // ---- loopback socket endpoint ----
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        final StringBuilder line = new StringBuilder();
+        final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+        // Responses are chained so they go out in the order the commands arrived
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        boolean closing;
+
+        Connection(SocketChannel channel) { this.channel = channel; }
+    }
+
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+
+    // Binds 127.0.0.1:port (0 picks a free port) and serves it on a background thread; returns the port
+    public int listen(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.configureBlocking(false);
+        Selector sel = Selector.open();
+        server.register(sel, SelectionKey.OP_ACCEPT);
+        selector = sel;
+        Thread t = new Thread(() -> serve(server, sel), "game-server-io");
+        t.setDaemon(true);
+        endpoint = t;
+        t.start();
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    private void serve(ServerSocketChannel server, Selector sel) {
+        try (server; sel) {
+            while (!Thread.currentThread().isInterrupted()) {
+                sel.select();
+                for (Connection c; (c = writable.poll()) != null; ) {
+                    SelectionKey key = c.channel.keyFor(sel);
+                    if (key != null && key.isValid()) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+                Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) accept(server, sel);
+                        else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // endpoint shut down
+        }
+    }
+
+    private void accept(ServerSocketChannel server, Selector sel) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.register(sel, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        if (c.channel.read(c.in) < 0) {
+            key.cancel();
+            c.channel.close();
+            return;
+        }
+        c.in.flip();
+        while (c.in.hasRemaining()) {
+            char ch = (char) (c.in.get() & 0xFF);
+            if (ch == '\n') {
+                String command = c.line.toString().trim();
+                c.line.setLength(0);
+                if (!command.isEmpty()) dispatch(c, command);
+            } else if (ch != '\r' && c.line.length() < 1024) {
+                c.line.append(ch);
+            }
+        }
+        c.in.clear();
+    }
+
+    private void dispatch(Connection c, String command) {
+        String[] tokens = command.split("\\s+", 2);
+        if (tokens[0].equalsIgnoreCase("quit")) {
+            c.tail = c.tail.thenRun(() -> { c.closing = true; send(c, "bye\n"); });
+            return;
+        }
+        // Every link completes normally, so one failed command cannot silence the ones after it
+        c.tail = c.tail.thenCompose(ignored -> handle(tokens))
+            .handle((response, error) -> error == null ? response : errorLine(error))
+            .thenAccept(response -> send(c, response));
+    }
+
+    private static String errorLine(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return "error: " + cause + "\n";
+    }
+
+    private CompletableFuture<String> handle(String[] tokens) {
+        if (tokens[0].equalsIgnoreCase("new")) return CompletableFuture.completedFuture("session " + createSession() + "\n");
+        if (tokens[0].equalsIgnoreCase("metrics")) return CompletableFuture.completedFuture(metrics());
+        try {
+            long id = Long.parseLong(tokens[0]);
+            if (tokens.length < 2) return CompletableFuture.completedFuture("error: missing command\n");
+            return execute(id, tokens[1]);
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture("error: expected 'new', 'metrics' or '<id> <command>'\n");
+        }
+    }
+
+    // Called from worker threads; the I/O thread picks the buffer up after a wakeup
+    private void send(Connection c, String response) {
+        c.out.add(ByteBuffer.wrap((response + ".\n").getBytes(StandardCharsets.UTF_8)));
+        writable.add(c);
+        Selector sel = selector;
+        if (sel != null) sel.wakeup();
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        for (ByteBuffer buf; (buf = c.out.peek()) != null; ) {
+            c.channel.write(buf);
+            if (buf.hasRemaining()) return;   // socket buffer full; wait for the next OP_WRITE
+            c.out.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (c.closing) {
+            key.cancel();
+            c.channel.close();
+        }
+    }
+
+    public void shutdown() {
+        Thread t = endpoint;
+        if (t != null) {
+            t.interrupt();
+            Selector sel = selector;
+            if (sel != null) sel.wakeup();
+        }
+        evictor.shutdownNow();
+        workers.shutdown();
+    }
+
+    // server [port <p>] [idle <seconds>] [journal <file>]    serves the socket endpoint, printing metrics every 10 seconds
+    // server load <games> [moves <n>] [journal <file>]      plays <games> concurrent sessions through the API and reports metrics
+    public static void run(String[] args) {
+        int port = DEFAULT_PORT, games = 0, plies = LOAD_LINE.length;
+        long idle = DEFAULT_IDLE_SECONDS;
+        String journalFile = null;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("port")) port = Integer.parseInt(args[++i]);
+                else if (args[i].equals("idle")) idle = Long.parseLong(args[++i]);
+                else if (args[i].equals("load")) games = Integer.parseInt(args[++i]);
+                else if (args[i].equals("moves")) plies = Math.min(Integer.parseInt(args[++i]), LOAD_LINE.length);
+                else if (args[i].equals("journal")) journalFile = args[++i];
+                else throw new IllegalArgumentException(args[i]);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Usage: java ChessMain server [port <port>] [idle <seconds>] [journal <file>]");
+            System.out.println("       java ChessMain server load <games> [moves <n>] [journal <file>]");
+            return;
+        }
+        GameServer server = new GameServer(idle);
+        System.out.println("Workers: " + (usesVirtualThreads() ? "virtual threads" : "platform thread pool (no virtual threads on this JDK)"));
+        GameJournal journal = null;
+        if (journalFile != null) {
+            try {
+                journal = new GameJournal(Paths.get(journalFile), GameJournal.DEFAULT_SYNC_MILLIS);
+                System.out.println("Journal " + journalFile + ": resumed " + server.setJournal(journal) + " interrupted games");
+                for (String skipped : server.getSkippedRecords()) System.out.println("Journal " + journalFile + ": skipped " + skipped);
+            } catch (IOException e) {
+                System.out.println("Cannot open journal " + journalFile + ": " + e.getMessage());
+                server.shutdown();
+                return;
+            }
+        }
+        if (games > 0) {
+            server.load(games, plies);
+            server.shutdown();
+            if (journal != null) journal.close();
+            return;
+        }
+        try {
+            System.out.println("Listening on 127.0.0.1:" + server.listen(port));
+            while (true) {
+                Thread.sleep(10_000);
+                System.out.print(server.metrics());
+            }
+        } catch (IOException e) {
+            System.out.println("Cannot listen on port " + port + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.shutdown();
+        if (journal != null) journal.close();
+    }
+
+    // Opening line replayed by every session of the load test
+    private static final String[] LOAD_LINE = {
+        "e2 e4", "e7 e5", "g1 f3", "b8 c6", "f1 b5", "a7 a6", "b5 a4", "g8 f6",
+        "e1 g1", "f8 e7", "f1 e1", "b7 b5", "a4 b3", "d7 d6", "c2 c3", "e8 g8",
+    };
+
+    private void load(int games, int plies) {
+        long start = System.nanoTime();
+        long[] ids = new long[games];
+        for (int i = 0; i < games; i++) ids[i] = createSession();
+        System.out.printf("Created %d sessions in %.2f s%n", games, (System.nanoTime() - start) / 1e9);
+        // Every session plays its moves in order, all sessions at once
+        List<CompletableFuture<String>> done = new ArrayList<>(games);
+        for (long id : ids) {
+            CompletableFuture<String> chain = CompletableFuture.completedFuture("");
+            for (int p = 0; p < plies; p++) {
+                String command = "move " + LOAD_LINE[p];
+                chain = chain.thenCompose(ignored -> execute(id, command));
+            }
+            done.add(chain);
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+        System.out.printf("Played %d moves in %d concurrent games in %.2f s%n", (long) games * plies, games,
+            (System.nanoTime() - start) / 1e9);
+        System.out.print(metrics());
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Validates large PGN game databases and FEN/EPD position files without loading them into memory.
+// The calling thread streams the file and hands batches of games to a worker pool; a bounded
+// queue makes the reader run a batch itself when the workers fall behind. Every move is resolved
+// from SAN against the legal moves of the replayed position, so any illegal or ambiguous move is
+// reported with the position it was played in.
+final class Importer {
+    private static final int BATCH = 64;
+    private static final long PROGRESS_NANOS = 5_000_000_000L;
+
+    private final ThreadPoolExecutor pool;
+    private final int maxErrors;
+    private final PrintStream out;
+    private final MoveVisitor visitor;
+    private final Phaser pending = new Phaser(1);   // one party per queued batch, plus the reader
+    private final ThreadLocal<Replay> replays = ThreadLocal.withInitial(Replay::new);
+
+    private final LongAdder games = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final AtomicLong invalid = new AtomicLong();
+
+    // Sees every move of every game before it is played, on the worker thread replaying the game.
+    // Moves of a game up to its first illegal one are visited.
+    interface MoveVisitor {
+        void visit(Pgn.Game game, int ply, Board board, int move);
+    }
+
+    // Per worker thread: the board games are replayed on and a scratch move list
+    private static final class Replay {
+        final Board board = new Board();
+        final MoveList legal = new MoveList();
+    }
+
+    public Importer(int threads, int maxErrors, PrintStream out) {
+        this(threads, maxErrors, out, null);
+    }
+
+    public Importer(int threads, int maxErrors, PrintStream out, MoveVisitor visitor) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(threads * 4), r -> {
+                Thread t = new Thread(r, "import-worker");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.maxErrors = maxErrors;
+        this.out = out;
+        this.visitor = visitor;
+    }
+
+    public long getGames() { return games.sum(); }
+    public long getMoves() { return moves.sum(); }
+    public long getInvalid() { return invalid.get(); }
+
+    public void importPgn(Path path) throws IOException {
+        try (PgnReader reader = new PgnReader(path)) {
+            long index = 0, lastProgress = System.nanoTime();
+            List<byte[]> batch = new ArrayList<>(BATCH);
+            long[] offsets = new long[BATCH];
+            for (byte[] game; (game = reader.next()) != null; ) {
+                offsets[batch.size()] = reader.gameOffset();
+                batch.add(game);
+                if (batch.size() == BATCH) {
+                    submitGames(batch, offsets.clone(), index);
+                    index += BATCH;
+                    batch = new ArrayList<>(BATCH);
+                    if (System.nanoTime() - lastProgress > PROGRESS_NANOS) {
+                        lastProgress = System.nanoTime();
+                        out.printf("... %d games, %.0f%% of %s%n", games.sum(),
+                            100.0 * reader.position() / Math.max(1, reader.size()), path.getFileName());
+                    }
+                }
+            }
+            if (!batch.isEmpty()) submitGames(batch, offsets, index);
+        }
+        awaitWorkers();
+    }
+
+    // One FEN or EPD record per line; EPD operations after the four position fields are ignored
+    public void importFen(Path path) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+            long lineNumber = 0;
+            List<String> batch = new ArrayList<>(BATCH);
+            for (String line; (line = in.readLine()) != null; ) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                batch.add(lineNumber + "\t" + line);
+                if (batch.size() == BATCH) {
+                    List<String> lines = batch;
+                    execute(() -> { for (String l : lines) checkFenLine(l); });
+                    batch = new ArrayList<>(BATCH);
+                }
+            }
+            List<String> lines = batch;
+            execute(() -> { for (String l : lines) checkFenLine(l); });
+        }
+        awaitWorkers();
+    }
+
+    public void shutdown() { pool.shutdownNow(); }
+
+    private void submitGames(List<byte[]> batch, long[] offsets, long firstIndex) {
+        execute(() -> {
+            Replay replay = replays.get();
+            for (int i = 0; i < batch.size(); i++) replayGame(replay, batch.get(i), firstIndex + i + 1, offsets[i]);
+        });
+    }
+
+    private void execute(Runnable batch) {
+        pending.register();
+        pool.execute(() -> {
+            try {
+                batch.run();
+            } finally {
+                pending.arriveAndDeregister();
+            }
+        });
+    }
+
+    // Waits for every submitted batch; the pool stays usable for the next file
+    private void awaitWorkers() {
+        pending.arriveAndAwaitAdvance();
+    }
+
+    private void replayGame(Replay replay, byte[] text, long number, long offset) {
+        Pgn.Game game = Pgn.parse(new String(text, StandardCharsets.ISO_8859_1));
+        games.increment();
+        Board board = replay.board;
+        String fen = game.tag("FEN");
+        try {
+            board.loadFen(fen != null ? fen : Board.START_FEN);
+        } catch (IllegalArgumentException e) {
+            error("game " + number + " at byte " + offset + ": bad FEN tag " + fen);
+            return;
+        }
+        String problem = board.validatePosition();
+        if (problem != null) {
+            error("game " + number + " at byte " + offset + ": " + problem + " in FEN tag " + fen);
+            return;
+        }
+        int ply = 0;
+        for (String san : game.moves) {
+            int move = Pgn.parseSan(board, san, replay.legal);
+            if (move == 0 || move == Pgn.AMBIGUOUS) {
+                moves.add(ply);
+                error("game " + number + " at byte " + offset + ", move " + (ply / 2 + 1) + (ply % 2 == 0 ? ". " : "... ")
+                    + san + ": " + (move == 0 ? "illegal" : "ambiguous") + " in " + board.toFen());
+                return;
+            }
+            if (visitor != null) visitor.visit(game, ply, board, move);
+            board.makeMove(move);
+            ply++;
+        }
+        moves.add(ply);
+    }
+
+    private void checkFenLine(String numbered) {
+        int tab = numbered.indexOf('\t');
+        String line = numbered.substring(tab + 1).trim();
+        games.increment();
+        String[] fields = line.split("\\s+");
+        // FEN has six fields; EPD has four followed by operations
+        boolean fullFen = fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+");
+        String fen = String.join(" ", Arrays.copyOf(fields, Math.min(fields.length, fullFen ? 6 : 4)));
+        Board board = replays.get().board;
+        try {
+            board.loadFen(fen);
+        } catch (IllegalArgumentException e) {
+            error("line " + numbered.substring(0, tab) + ": malformed FEN " + line);
+            return;
+        }
+        String problem = board.validatePosition();
+        if (problem != null) error("line " + numbered.substring(0, tab) + ": " + problem + " in " + line);
+    }
+
+    private void error(String message) {
+        if (invalid.incrementAndGet() <= maxErrors) {
+            synchronized (out) { out.println(message); }
+        }
+    }
+
+    // import <file> [threads <n>] [errors <n>]    .pgn files hold games; anything else one FEN or EPD per line
+    public static void run(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors(), maxErrors = 20;
+        Path path;
+        try {
+            path = Paths.get(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("threads")) threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("errors")) maxErrors = Integer.parseInt(args[++i]);
+                else throw new IllegalArgumentException(args[i]);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Usage: java ChessMain import <file.pgn|file.fen|file.epd> [threads <n>] [errors <n>]");
+            return;
+        }
+        Importer importer = new Importer(threads, maxErrors, System.out);
+        boolean pgn = path.getFileName().toString().toLowerCase().endsWith(".pgn");
+        long start = System.nanoTime();
+        try {
+            if (pgn) importer.importPgn(path);
+            else importer.importFen(path);
+        } catch (IOException e) {
+            System.out.println("Cannot read " + path + ": " + e.getMessage());
+            return;
+        } finally {
+            importer.shutdown();
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        long size = path.toFile().length();
+        String unit = pgn ? "games" : "positions";
+        System.out.printf("%d %s, %d invalid%s%n", importer.getGames(), unit, importer.getInvalid(),
+            importer.getInvalid() > maxErrors ? " (first " + maxErrors + " shown)" : "");
+        if (pgn) System.out.printf("%d moves replayed%n", importer.getMoves());
+        System.out.printf("%.2f s on %d threads: %.0f %s/s, %.1f MB/s%n", seconds, threads,
+            importer.getGames() / seconds, unit, size / seconds / (1 << 20));
+    }
+}
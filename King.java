@@ -0,0 +1,59 @@
+// King
+class King extends Piece {
+    public King(Color color, Position pos) { super(color, pos); }
+
+    @Override
+    protected boolean matchesMovePattern(Position from, Position to, Board board) {
+        int rDiff = Math.abs(to.getRow() - from.getRow());
+        int cDiff = Math.abs(to.getCol() - from.getCol());
+        
+        // Normal one-step move
+        if (rDiff <= 1 && cDiff <= 1) {
+            return true;
+        }
+
+        // Castling
+        if (rDiff == 0 && cDiff == 2) {
+            int row = from.getRow();
+            // Determine if it's kingside or queenside based on destination column
+            int rookCol = (to.getCol() > from.getCol()) ? 7 : 0;
+            Position rookPos = Position.of(row * 8 + rookCol);
+            Piece rook = board.getPiece(rookPos);
+
+            if (board.hasCastlingRight(color, rookCol == 7) && rook instanceof Rook && rook.getColor() == color) {
+                // Check if the path between king and rook is clear
+                int step = (rookCol > from.getCol()) ? 1 : -1;
+                for (int i = from.getCol() + step; i != rookCol; i += step) {
+                    if (board.getPiece(row * 8 + i) != null) {
+                        return false; // Path is blocked
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void generateMoves(int from, Board board, MoveList moves) {
+        addTargets(from, Bitboards.KING_ATTACKS[from], board, moves);
+        // Castling: right still held, rook in the corner and nothing in between
+        int row = from >> 3;
+        if ((from & 7) != 4) return;
+        Piece rook = board.getPiece(row * 8 + 7);
+        if (board.hasCastlingRight(color, true) && rook instanceof Rook && rook.getColor() == color
+                && (Bitboards.between(from, row * 8 + 7) & board.getOccupied()) == 0)
+            moves.add(Move.encode(from, from + 2, Move.KING_CASTLE));
+        rook = board.getPiece(row * 8);
+        if (board.hasCastlingRight(color, false) && rook instanceof Rook && rook.getColor() == color
+                && (Bitboards.between(from, row * 8) & board.getOccupied()) == 0)
+            moves.add(Move.encode(from, from - 2, Move.QUEEN_CASTLE));
+    }
+
+    @Override
+    public String getSymbol() {
+        return color == Color.WHITE ? "K" : "k";
+    }
+    @Override
+    public int getType() { return KING; }
+}
@@ -0,0 +1,20 @@
+// Knight
+class Knight extends Piece {
+    public Knight(Color color, Position pos) { super(color, pos); }
+    @Override
+    public void generateMoves(int from, Board board, MoveList moves) {
+        addTargets(from, Bitboards.KNIGHT_ATTACKS[from], board, moves);
+    }
+    @Override
+    protected boolean matchesMovePattern(Position from, Position to, Board board) {
+        int r = Math.abs(to.getRow() - from.getRow());
+        int c = Math.abs(to.getCol() - from.getCol());
+        return (r == 2 && c == 1) || (r == 1 && c == 2);
+    }
+    @Override
+    public String getSymbol() {
+        return color == Color.WHITE ? "N" : "n";
+    }
+    @Override
+    public int getType() { return KNIGHT; }
+}
@@ -0,0 +1,145 @@
+// Legal moves of recently seen positions, keyed by Zobrist hash, so the game-over test, "legal"
+// queries and move validation in the same position share one generation. Moves are stored grouped
+// by origin square, so the moves of one piece are found without scanning the rest. Holds at most
+// `capacity` positions and evicts the least recently used. Not thread-safe: one cache per game.
+final class LegalMoveCache {
+    // Legal moves of one position for the side to move
+    static final class Entry {
+        private long key;
+        private int[] moves;                          // reused when the slot is recycled
+        private int size;
+        private final byte[] start = new byte[65];   // moves from square sq are [start[sq], start[sq + 1]), unsigned
+
+        public int size() { return size; }
+        public int get(int i) { return moves[i]; }
+
+        // Index range of the moves starting on a square
+        public int firstFrom(int sq) { return start[sq] & 0xFF; }
+        public int endFrom(int sq) { return start[sq + 1] & 0xFF; }
+
+        // The legal move from, to with the given promotion piece (ignored for other moves), or 0
+        public int find(int from, int to, int promotionType) {
+            for (int i = firstFrom(from), end = endFrom(from); i < end; i++) {
+                int m = moves[i];
+                if (Move.to(m) == to && (!Move.isPromotion(m) || Move.promotionType(m) == promotionType)) return m;
+            }
+            return 0;
+        }
+    }
+
+    private static final int MIN_MOVES = 64;   // room for most positions, so recycled slots rarely reallocate
+
+    private final int capacity;
+    private final Entry[] entries;
+    private final int[] prev, next;        // recency list through entry slots, most recent at head
+    private int head = -1, tail = -1, size;
+    private final int[] index;             // open addressing on the key: slot + 1, or 0 if empty
+    private final int mask;
+    private final MoveList scratch = new MoveList();
+    private final int[] counts = new int[64];
+    private long hits, misses;
+
+    public LegalMoveCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+        this.capacity = capacity;
+        this.entries = new Entry[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.index = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+
+    // Legal moves for the side to move in the board's position, generated on a miss
+    public Entry get(Board board) {
+        long key = board.getHash();
+        for (int i = bucket(key); index[i] != 0; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if (entries[slot].key == key) {
+                hits++;
+                touch(slot);
+                return entries[slot];
+            }
+        }
+        misses++;
+        int slot;
+        if (size < capacity) {
+            slot = size++;
+            entries[slot] = new Entry();
+        } else {
+            slot = tail;
+            unlink(slot);
+            removeKey(entries[slot].key);
+        }
+        Entry e = entries[slot];
+        fill(e, board);
+        e.key = key;
+        int i = bucket(key);
+        while (index[i] != 0) i = (i + 1) & mask;
+        index[i] = slot + 1;
+        pushFront(slot);
+        return e;
+    }
+
+    private void fill(Entry e, Board board) {
+        scratch.clear();
+        board.generateLegalMoves(board.getSideToMove(), scratch);
+        java.util.Arrays.fill(counts, 0);
+        for (int i = 0; i < scratch.size(); i++) counts[Move.from(scratch.get(i))]++;
+        int offset = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            e.start[sq] = (byte) offset;
+            offset += counts[sq];
+            counts[sq] = e.start[sq] & 0xFF;   // next free index for this square
+        }
+        e.start[64] = (byte) offset;
+        if (e.moves == null || e.moves.length < offset) e.moves = new int[Math.max(offset, MIN_MOVES)];
+        e.size = offset;
+        for (int i = 0; i < scratch.size(); i++) {
+            int m = scratch.get(i);
+            e.moves[counts[Move.from(m)]++] = m;
+        }
+    }
+
+    private int bucket(long key) {
+        return (int) (key ^ key >>> 32) & mask;
+    }
+
+    // Linear probing delete: shifts later keys of the run back so lookups never stop early
+    private void removeKey(long key) {
+        int i = bucket(key);
+        while (entries[index[i] - 1].key != key) i = (i + 1) & mask;
+        index[i] = 0;
+        for (int j = (i + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+            int home = bucket(entries[index[j] - 1].key);
+            // Move the entry at j into the hole at i unless its home lies cyclically in (i, j]
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                index[i] = index[j];
+                index[j] = 0;
+                i = j;
+            }
+        }
+    }
+
+    private void touch(int slot) {
+        if (slot == head) return;
+        unlink(slot);
+        pushFront(slot);
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] >= 0) next[prev[slot]] = next[slot]; else head = next[slot];
+        if (next[slot] >= 0) prev[next[slot]] = prev[slot]; else tail = prev[slot];
+    }
+
+    private void pushFront(int slot) {
+        prev[slot] = -1;
+        next[slot] = head;
+        if (head >= 0) prev[head] = slot;
+        head = slot;
+        if (tail < 0) tail = slot;
+    }
+}
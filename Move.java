@@ -0,0 +1,36 @@
+// Move
+class Move {
+    // Packed encoding used by the move generator: from | to << 6 | flags << 12
+    public static final int QUIET = 0, DOUBLE_PUSH = 1, KING_CASTLE = 2, QUEEN_CASTLE = 3,
+        CAPTURE = 4, EN_PASSANT = 5, PROMOTION = 8; // promotion flags: 8 + (type - KNIGHT), +4 if capturing
+
+    public static int encode(int from, int to, int flags) { return from | to << 6 | flags << 12; }
+    public static int from(int move) { return move & 63; }
+    public static int to(int move) { return (move >>> 6) & 63; }
+    public static int flags(int move) { return move >>> 12; }
+    public static boolean isCapture(int move) { return (move & (CAPTURE << 12)) != 0; }
+    public static boolean isPromotion(int move) { return (move & (PROMOTION << 12)) != 0; }
+    public static int promotionType(int move) { return ((move >>> 12) & 3) + Piece.KNIGHT; }
+    // Coordinate notation of a packed move, e.g. e2e4 or e7e8q
+    public static String notation(int move) {
+        String s = Position.of(from(move)).toString() + Position.of(to(move));
+        return isPromotion(move) ? s + "nbrq".charAt(promotionType(move) - Piece.KNIGHT) : s;
+    }
+
+    // Object form of a packed move, for display and the public API
+    public static Move of(int move) {
+        Move m = new Move(Position.of(from(move)), Position.of(to(move)));
+        if (isPromotion(move)) m.promotion = promotionType(move);
+        return m;
+    }
+
+    private Position from,to; private Piece captured;
+    private int promotion = Piece.QUEEN;
+    public Move(Position from,Position to){ this.from=from; this.to=to;}
+    public Move(Position from,Position to,int promotion){ this(from,to); this.promotion=promotion;}
+    public Position getFrom(){return from;} public Position getTo(){return to;}
+    public int getPromotion(){return promotion;}
+    public Piece getCapturedPiece(){return captured;}
+    public void setCapturedPiece(Piece p){captured=p;}
+    @Override public String toString(){ return from+" to "+to; }
+}
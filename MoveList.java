@@ -0,0 +1,17 @@
+// Reusable buffer of packed moves (see Move.encode). Generators append to it, callers
+// clear and reuse it instead of allocating a list per position.
+final class MoveList {
+    // Upper bound on legal moves in any reachable chess position is 218
+    public static final int CAPACITY = 256;
+
+    private final int[] moves = new int[CAPACITY];
+    private int size;
+
+    public void add(int move) { moves[size++] = move; }
+    public int get(int index) { return moves[index]; }
+    public void set(int index, int move) { moves[index] = move; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public void clear() { size = 0; }
+    public void truncate(int newSize) { size = newSize; }
+}
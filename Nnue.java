@@ -0,0 +1,166 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.SplittableRandom;
+
+// Small NNUE-style network: 768 piece-square inputs per side (color, type, square, seen from that
+// side), one hidden layer shared by both sides, and a single output. The hidden layer's input sums
+// (the accumulator) change only by a few weight rows per move, so Board adds and subtracts rows in
+// put() and clear() instead of recomputing them; an evaluation is then one clipped dot product.
+//
+// The row additions and the dot product run in a Kernel: plain loops by default, or SIMD through
+// the Vector API when vector/NnueVectorKernel.java is compiled in and the incubator module is
+// enabled (see the README).
+//
+// Weight file, little-endian: int magic "NNU1", int hidden size, then int16 input weights
+// [768][hidden], input biases [hidden], output weights [2][hidden] (side to move first) and
+// the output bias.
+final class Nnue {
+    public static final int INPUTS = 768;
+    private static final int MAGIC = 0x3155_4E4E;   // "NNU1" read little-endian
+    static final int QA = 255, QB = 64;              // activation and output weight quantization
+    private static final int SCALE = 400;            // network output units to centipawns
+    private static final int MAX_SCORE = Search.MATE_BOUND - 1;   // evaluations stay out of the mate range
+
+    private final int hidden;
+    private final short[] inputWeights;
+    private final short[] inputBias;
+    private final short[] outputWeights;
+    private final int outputBias;
+
+    private Nnue(int hidden, short[] inputWeights, short[] inputBias, short[] outputWeights, int outputBias) {
+        this.hidden = hidden;
+        this.inputWeights = inputWeights;
+        this.inputBias = inputBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    public int getHidden() { return hidden; }
+
+    // The accumulator arithmetic; implementations must give exactly the scalar results
+    interface Kernel {
+        void add(short[] acc, short[] weights, int offset);
+        void subtract(short[] acc, short[] weights, int offset);
+        // Sum of clamp(acc[i], 0, QA) * weights[offset + i]
+        int dot(short[] acc, short[] weights, int offset);
+    }
+
+    static final class ScalarKernel implements Kernel {
+        @Override public void add(short[] acc, short[] weights, int offset) {
+            for (int i = 0; i < acc.length; i++) acc[i] += weights[offset + i];
+        }
+
+        @Override public void subtract(short[] acc, short[] weights, int offset) {
+            for (int i = 0; i < acc.length; i++) acc[i] -= weights[offset + i];
+        }
+
+        @Override public int dot(short[] acc, short[] weights, int offset) {
+            int sum = 0;
+            for (int i = 0; i < acc.length; i++) sum += Math.min(Math.max(acc[i], 0), QA) * weights[offset + i];
+            return sum;
+        }
+    }
+
+    static final Kernel KERNEL = loadKernel();
+
+    private static Kernel loadKernel() {
+        try {
+            return (Kernel) Class.forName("NnueVectorKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernel();   // not compiled in, or jdk.incubator.vector not enabled
+        }
+    }
+
+    // Name of the kernel in use, for reports
+    public static String getKernelName() { return KERNEL instanceof ScalarKernel ? "scalar" : "vector"; }
+
+    public static Nnue load(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 8 || size > Integer.MAX_VALUE) throw new IOException(path + " is not a network file");
+            ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) { }
+            buf.flip();
+            int hidden = buf.getInt(4);
+            if (buf.getInt(0) != MAGIC || hidden <= 0 || hidden > 4096
+                    || size != 8 + 2L * ((long) INPUTS * hidden + hidden + 2L * hidden + 1))
+                throw new IOException(path + " is not a network file");
+            buf.position(8);
+            short[] inputWeights = new short[INPUTS * hidden], inputBias = new short[hidden];
+            short[] outputWeights = new short[2 * hidden];
+            buf.asShortBuffer().get(inputWeights);
+            buf.position(buf.position() + 2 * inputWeights.length);
+            buf.asShortBuffer().get(inputBias);
+            buf.position(buf.position() + 2 * inputBias.length);
+            buf.asShortBuffer().get(outputWeights);
+            buf.position(buf.position() + 2 * outputWeights.length);
+            return new Nnue(hidden, inputWeights, inputBias, outputWeights, buf.getShort());
+        }
+    }
+
+    // Untrained network with small random weights, for benchmarks and file format checks
+    public static Nnue random(int hidden, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        short[] inputWeights = new short[INPUTS * hidden], inputBias = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        for (int i = 0; i < inputWeights.length; i++) inputWeights[i] = (short) random.nextInt(-32, 33);
+        for (int i = 0; i < hidden; i++) inputBias[i] = (short) random.nextInt(0, 128);
+        for (int i = 0; i < outputWeights.length; i++) outputWeights[i] = (short) random.nextInt(-64, 65);
+        return new Nnue(hidden, inputWeights, inputBias, outputWeights, 0);
+    }
+
+    public Accumulator newAccumulator() { return new Accumulator(); }
+
+    // Hidden layer input sums from White's and Black's side. One per Board; Board keeps it current.
+    final class Accumulator {
+        private final short[] white = new short[hidden];
+        private final short[] black = new short[hidden];
+
+        // Back to the empty board
+        void reset() {
+            System.arraycopy(inputBias, 0, white, 0, hidden);
+            System.arraycopy(inputBias, 0, black, 0, hidden);
+        }
+
+        // piece is Board's bitboard index, color * 6 + type
+        void add(int piece, int sq) {
+            KERNEL.add(white, inputWeights, (piece * 64 + sq) * hidden);
+            KERNEL.add(black, inputWeights, ((piece < 6 ? piece + 6 : piece - 6) * 64 + (sq ^ 56)) * hidden);
+        }
+
+        void remove(int piece, int sq) {
+            KERNEL.subtract(white, inputWeights, (piece * 64 + sq) * hidden);
+            KERNEL.subtract(black, inputWeights, ((piece < 6 ? piece + 6 : piece - 6) * 64 + (sq ^ 56)) * hidden);
+        }
+
+        // Centipawns from the side to move's point of view
+        int evaluate(Color sideToMove) {
+            return sideToMove == Color.WHITE ? output(KERNEL, white, black) : output(KERNEL, black, white);
+        }
+    }
+
+    // The evaluation of a board computed from nothing with the scalar kernel, to check the
+    // incremental accumulator and the kernel in use against
+    int evaluateFromScratch(Board board) {
+        Kernel scalar = new ScalarKernel();
+        short[] white = inputBias.clone(), black = inputBias.clone();
+        for (long b = board.getOccupied(); b != 0; b &= b - 1) {
+            int sq = Long.numberOfTrailingZeros(b);
+            Piece p = board.getPiece(sq);
+            int piece = p.getColor().ordinal() * 6 + p.getType();
+            scalar.add(white, inputWeights, (piece * 64 + sq) * hidden);
+            scalar.add(black, inputWeights, ((piece < 6 ? piece + 6 : piece - 6) * 64 + (sq ^ 56)) * hidden);
+        }
+        return board.getSideToMove() == Color.WHITE ? output(scalar, white, black) : output(scalar, black, white);
+    }
+
+    // Clamped so that no network, however large its weights, can pass an evaluation off as a mate score
+    private int output(Kernel kernel, short[] us, short[] them) {
+        int sum = kernel.dot(us, outputWeights, 0) + kernel.dot(them, outputWeights, hidden);
+        long score = ((long) sum / QA + outputBias) * SCALE / (QA * QB);
+        return (int) Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+    }
+}
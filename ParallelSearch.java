@@ -0,0 +1,146 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Lazy SMP: every thread searches the same root position on its own Board copy, and threads
+// cooperate only through the shared transposition table. The result of the first thread,
+// which searches the caller's board, is the one returned.
+final class ParallelSearch {
+    private final TranspositionTable tt;
+    private final int threads;
+    private final ExecutorService helpers;
+    private final long[] threadNodes;
+    private volatile Search[] running = new Search[0];
+    private Tablebases tablebases;
+    private Nnue network;
+
+    public ParallelSearch(TranspositionTable tt, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.tt = tt;
+        this.threads = threads;
+        this.threadNodes = new long[threads];
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "search-helper");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    public int getThreads() { return threads; }
+    public TranspositionTable getTranspositionTable() { return tt; }
+    public void setTablebases(Tablebases tablebases) { this.tablebases = tablebases; }
+    public void setNetwork(Nnue network) { this.network = network; }
+
+    // Nodes searched by each thread in the last search
+    public long[] getThreadNodes() { return threadNodes.clone(); }
+
+    public long getNodes() {
+        long total = 0;
+        for (long n : threadNodes) total += n;
+        return total;
+    }
+
+    // Searches the board's current position; the board is left unchanged
+    public int search(Board board, int maxDepth, long timeMillis, Search.Listener listener) {
+        prepare(board);
+        return search(maxDepth, timeMillis, listener);
+    }
+
+    // Sets up the threads for a search of the board's position without starting it. stop() applies
+    // from here on, so a caller that starts the search on another thread can't lose an early stop.
+    public void prepare(Board board) {
+        Search[] searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(i == 0 ? board : board.copy(), tt);
+            searches[i].setThreadId(i);
+            searches[i].setTablebases(tablebases);
+            searches[i].setNetwork(network);
+        }
+        running = searches;
+    }
+
+    // Runs the search set up by the last prepare()
+    public int search(int maxDepth, long timeMillis, Search.Listener listener) {
+        Search[] searches = running;
+        if (searches.length == 0) throw new IllegalStateException("no prepared search");
+        tt.newSearch();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Search helper = searches[i];
+            futures.add(helpers.submit(() -> helper.search(maxDepth, timeMillis, null)));
+        }
+        // Report totals over all threads to the listener of the main thread
+        int best = searches[0].search(maxDepth, timeMillis, listener == null ? null
+            : (depth, score, nodes, elapsed, pv, pvLength) -> {
+                long total = 0;
+                for (Search s : searches) total += s.getNodes();
+                listener.iterationDone(depth, score, total, elapsed, pv, pvLength);
+            });
+        for (int i = 1; i < threads; i++) searches[i].stop();
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        for (int i = 0; i < threads; i++) threadNodes[i] = searches[i].getNodes();
+        running = new Search[0];
+        return best;
+    }
+
+    public void stop() {
+        for (Search s : running) s.stop();
+    }
+
+    // Starts a time budget for the prepared or running search, counted from now
+    public void startClock(long timeMillis) {
+        for (Search s : running) s.startClock(timeMillis);
+    }
+
+    public void shutdown() {
+        if (helpers != null) helpers.shutdownNow();
+    }
+
+    // smp <depth> [threads <n>] [hash <MB>] [fen <fen>]
+    // Time-to-depth with 1, 2, 4, ... up to n threads, each from an empty table
+    public static void run(String[] args) {
+        int depth, maxThreads = Runtime.getRuntime().availableProcessors(), hashMb = TranspositionTable.DEFAULT_MB;
+        String fen = Board.START_FEN;
+        try {
+            depth = Integer.parseInt(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("threads")) maxThreads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("hash")) hashMb = Integer.parseInt(args[++i]);
+                else if (args[i].equals("fen")) {
+                    fen = String.join(" ", Arrays.copyOfRange(args, i + 1, args.length));
+                    break;
+                } else throw new IllegalArgumentException(args[i]);
+            }
+            if (depth < 1 || maxThreads < 1 || hashMb < 1) throw new IllegalArgumentException();
+            new Board(fen);
+        } catch (RuntimeException e) {
+            System.out.println("Usage: java ChessMain smp <depth> [threads <n>] [hash <MB>] [fen <fen>]");
+            return;
+        }
+
+        System.out.printf("%-8s %10s %14s %14s %9s  %s%n", "Threads", "Time (s)", "Nodes", "Nodes/s", "Speedup", "Nodes per thread");
+        double baseSeconds = 0;
+        TranspositionTable tt = new TranspositionTable(hashMb);
+        for (int n = 1; ; n = Math.min(n * 2, maxThreads)) {
+            tt.clear();
+            ParallelSearch search = new ParallelSearch(tt, n);
+            Board board = new Board(fen);
+            long start = System.nanoTime();
+            int best = search.search(board, depth, 0, null);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            search.shutdown();
+            if (n == 1) baseSeconds = seconds;
+            System.out.printf("%-8d %10.3f %14d %14.0f %8.2fx  %s  (best %s)%n", n, seconds, search.getNodes(),
+                search.getNodes() / seconds, baseSeconds / seconds, Arrays.toString(search.getThreadNodes()),
+                best == 0 ? "none" : Move.notation(best));
+            if (n == maxThreads) break;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// Pawn
+class Pawn extends Piece {
+    public Pawn(Color color, Position pos) { super(color, pos); }
+
+    @Override
+    protected boolean matchesMovePattern(Position from, Position to, Board board) {
+        int dir = color == Color.WHITE ? -1 : 1;
+        int rowDiff = to.getRow() - from.getRow();
+        int colDiff = to.getCol() - from.getCol();
+
+        // Normal move
+        if (colDiff == 0) {
+            if (rowDiff == dir && board.getPiece(to) == null) return true;
+            if (from.getRow() == (color == Color.WHITE ? 6 : 1) && rowDiff == 2 * dir) {
+                Position mid = Position.of(from.getSquare() + 8 * dir);
+                return board.getPiece(to) == null && board.getPiece(mid) == null;
+            }
+        }
+        // Capture
+        if (Math.abs(colDiff) == 1 && rowDiff == dir) {
+            Piece target = board.getPiece(to);
+            if (target != null && target.getColor() != color) return true;
+            // En passant
+            if (board.getSideToMove() == color && to.getSquare() == board.getEnPassantSquare())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void generateMoves(int from, Board board, MoveList moves) {
+        int dir = color == Color.WHITE ? -8 : 8;
+        int row = from >> 3;
+        boolean promotes = row == (color == Color.WHITE ? 1 : 6);
+        long occupied = board.getOccupied();
+        // Pushes
+        int one = from + dir;
+        if ((occupied & (1L << one)) == 0) {
+            addPawnMove(from, one, Move.QUIET, promotes, moves);
+            int two = one + dir;
+            if (row == (color == Color.WHITE ? 6 : 1) && (occupied & (1L << two)) == 0)
+                moves.add(Move.encode(from, two, Move.DOUBLE_PUSH));
+        }
+        // Captures
+        long attacks = Bitboards.PAWN_ATTACKS[color.ordinal()][from];
+        for (long t = attacks & board.getOccupancy(color.opposite()); t != 0; t &= t - 1)
+            addPawnMove(from, Long.numberOfTrailingZeros(t), Move.CAPTURE, promotes, moves);
+        // En passant
+        int ep = board.getEnPassantSquare();
+        if (ep >= 0 && board.getSideToMove() == color && (attacks & (1L << ep)) != 0)
+            moves.add(Move.encode(from, ep, Move.EN_PASSANT));
+    }
+
+    private static void addPawnMove(int from, int to, int flags, boolean promotes, MoveList moves) {
+        if (!promotes) { moves.add(Move.encode(from, to, flags)); return; }
+        for (int type = QUEEN; type >= KNIGHT; type--)
+            moves.add(Move.encode(from, to, flags | Move.PROMOTION | (type - KNIGHT)));
+    }
+
+    public String getSymbol() {
+        return color == Color.WHITE ? "P" : "p";
+    }
+    @Override
+    public int getType() { return PAWN; }
+}
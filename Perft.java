@@ -0,0 +1,143 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Counts leaf nodes of the legal move tree. Used to check the move generator against known
+// perft numbers and as a throughput benchmark.
+final class Perft {
+    private final Board board;
+    private final MoveList[] lists;
+
+    public Perft(Board board, int maxDepth) {
+        this.board = board;
+        this.lists = new MoveList[Math.max(maxDepth, 1) + 1];
+        for (int i = 0; i < lists.length; i++) lists[i] = new MoveList();
+    }
+
+    public long count(int depth) {
+        if (depth == 0) return 1;
+        MoveList moves = lists[depth];
+        moves.clear();
+        board.generateLegalMoves(board.getSideToMove(), moves);
+        if (depth == 1) return moves.size();   // bulk counting at the leaves
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += count(depth - 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    // Node count below each root move, in generation order
+    public static Map<String, Long> divide(Board board, int depth) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        Perft perft = new Perft(board, depth);
+        for (int move : rootMoves(board)) {
+            board.makeMove(move);
+            result.put(Move.notation(move), perft.count(depth - 1));
+            board.unmakeMove();
+        }
+        return result;
+    }
+
+    // Same as divide, but every root move is searched by a pool task on its own board copy
+    public static Map<String, Long> divideParallel(Board board, int depth, ForkJoinPool pool) {
+        int[] roots = rootMoves(board);
+        List<RootTask> tasks = new ArrayList<>(roots.length);
+        for (int move : roots) tasks.add(new RootTask(board.copy(), move, depth));
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() { invokeAll(tasks); }
+        });
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (RootTask task : tasks) result.put(Move.notation(task.move), task.join());
+        return result;
+    }
+
+    private static int[] rootMoves(Board board) {
+        MoveList moves = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), moves);
+        int[] result = new int[moves.size()];
+        for (int i = 0; i < result.length; i++) result[i] = moves.get(i);
+        return result;
+    }
+
+    private static final class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int move;
+        private final int depth;
+
+        RootTask(Board board, int move, int depth) {
+            this.board = board;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            board.makeMove(move);
+            return new Perft(board, depth).count(depth - 1);
+        }
+    }
+
+    // perft <depth> [divide] [parallel [threads]] [fen <fen>]
+    public static void run(String[] args) {
+        if (args.length < 2) { printUsage(); return; }
+        int depth;
+        try {
+            depth = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            printUsage(); return;
+        }
+        boolean divide = false, parallel = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String fen = Board.START_FEN;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("divide")) divide = true;
+            else if (args[i].equals("parallel")) {
+                parallel = true;
+                if (i + 1 < args.length && args[i + 1].matches("\\d+")) threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("fen")) {
+                fen = String.join(" ", Arrays.copyOfRange(args, i + 1, args.length));
+                break;
+            } else { printUsage(); return; }
+        }
+        if (depth < 1 || threads < 1) { printUsage(); return; }
+
+        Board board;
+        try {
+            board = new Board(fen);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage()); return;
+        }
+        long start = System.nanoTime();
+        long nodes;
+        if (divide || parallel) {
+            Map<String, Long> counts;
+            if (parallel) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                counts = divideParallel(board, depth, pool);
+                pool.shutdown();
+            } else {
+                counts = divide(board, depth);
+            }
+            nodes = 0;
+            for (Map.Entry<String, Long> e : counts.entrySet()) {
+                if (divide) System.out.println(e.getKey() + ": " + e.getValue());
+                nodes += e.getValue();
+            }
+            if (divide) System.out.println();
+        } else {
+            nodes = new Perft(board, depth).count(depth);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Depth " + depth + (parallel ? " (" + threads + " threads)" : "") + ": " + nodes + " nodes");
+        System.out.printf("Time: %.3f s, %.0f nodes/s%n", elapsed / 1e9, nodes / Math.max(elapsed / 1e9, 1e-9));
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java ChessMain perft <depth> [divide] [parallel [threads]] [fen <fen>]");
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.*;
+
+// PGN game text and Standard Algebraic Notation. A game is split into its tag pairs and the
+// SAN tokens of the main line; comments, variations, NAGs and move numbers are dropped.
+final class Pgn {
+    // Returned by parseSan when the SAN fits more than one legal move
+    public static final int AMBIGUOUS = -1;
+
+    static final class Game {
+        final Map<String, String> tags = new LinkedHashMap<>();
+        final List<String> moves = new ArrayList<>();
+        String result = "*";
+
+        String tag(String name) { return tags.get(name); }
+    }
+
+    private Pgn() {}
+
+    public static Game parse(String text) {
+        Game game = new Game();
+        int n = text.length(), depth = 0;
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == '[' && depth == 0) {
+                i = parseTag(text, i + 1, game);
+            } else if (c == '{') {
+                int close = text.indexOf('}', i + 1);
+                i = close < 0 ? n : close + 1;
+            } else if (c == ';' || (c == '%' && (i == 0 || text.charAt(i - 1) == '\n'))) {
+                int eol = text.indexOf('\n', i + 1);
+                i = eol < 0 ? n : eol + 1;
+            } else if (c == '(') {
+                depth++; i++;
+            } else if (c == ')') {
+                if (depth > 0) depth--;
+                i++;
+            } else if (c <= ' ' || c == '$' || c == ']') {
+                i++;
+                if (c == '$') while (i < n && Character.isDigit(text.charAt(i))) i++;
+            } else {
+                int start = i;
+                while (i < n && text.charAt(i) > ' ' && "{}()[];".indexOf(text.charAt(i)) < 0) i++;
+                if (depth == 0) addToken(game, text.substring(start, i));
+            }
+        }
+        return game;
+    }
+
+    // [Name "value"]; returns the index after the closing bracket
+    private static int parseTag(String text, int i, Game game) {
+        int n = text.length();
+        int nameStart = i;
+        while (i < n && text.charAt(i) > ' ' && text.charAt(i) != ']' && text.charAt(i) != '"') i++;
+        String name = text.substring(nameStart, i);
+        while (i < n && text.charAt(i) != '"' && text.charAt(i) != ']') i++;
+        StringBuilder value = new StringBuilder();
+        if (i < n && text.charAt(i) == '"') {
+            for (i++; i < n && text.charAt(i) != '"'; i++) {
+                if (text.charAt(i) == '\\' && i + 1 < n) i++;
+                value.append(text.charAt(i));
+            }
+        }
+        while (i < n && text.charAt(i) != ']' && text.charAt(i) != '\n') i++;
+        if (!name.isEmpty()) game.tags.put(name, value.toString());
+        return i + 1;
+    }
+
+    private static void addToken(Game game, String token) {
+        if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+            game.result = token;
+            return;
+        }
+        // Move numbers: "12." or "12..." on their own or glued to the move ("12.e4")
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) i++;
+        int dots = i;
+        while (dots < token.length() && token.charAt(dots) == '.') dots++;
+        if (dots > i || i == token.length()) token = token.substring(dots);
+        if (!token.isEmpty()) game.moves.add(token);
+    }
+
+    // The legal move named by a SAN string such as "Nbd7", "exd6", "e8=Q+" or "O-O" in the board's
+    // position. Coordinate moves such as "g1f3", "e1g1" or "e7e8q" are accepted too. Returns 0 if no
+    // legal move fits, or AMBIGUOUS if several do. legal is a scratch list.
+    public static int parseSan(Board board, String san, MoveList legal) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) end--;
+        if (end < 2) return 0;
+        legal.clear();
+        board.generateLegalMoves(board.getSideToMove(), legal);
+
+        if (san.startsWith("O-O") || san.startsWith("0-0")) {
+            int flags = end == 3 ? Move.KING_CASTLE : end == 5 ? Move.QUEEN_CASTLE : -1;
+            for (int k = 0; k < legal.size(); k++) if (Move.flags(legal.get(k)) == flags) return legal.get(k);
+            return 0;
+        }
+
+        // Coordinate moves name both squares, so they are matched on those for every piece
+        int coordFrom = square(san, 0), coordTo = square(san, 2);
+        if ((end == 4 || end == 5) && coordFrom >= 0 && coordTo >= 0) {
+            int promotion = end == 5 ? "nbrq".indexOf(Character.toLowerCase(san.charAt(4))) + Piece.KNIGHT : -1;
+            if (end == 5 && promotion < Piece.KNIGHT) return 0;
+            for (int k = 0; k < legal.size(); k++) {
+                int m = legal.get(k);
+                if (Move.from(m) == coordFrom && Move.to(m) == coordTo
+                        && (Move.isPromotion(m) ? Move.promotionType(m) == promotion : promotion < 0))
+                    return m;
+            }
+            return 0;
+        }
+
+        int type = Piece.PAWN, i = 0;
+        int letter = "NBRQK".indexOf(san.charAt(0));
+        if (letter >= 0) { type = letter + Piece.KNIGHT; i = 1; }
+        int promotion = -1;
+        if (san.charAt(end - 2) == '=') {
+            promotion = "NBRQ".indexOf(san.charAt(end - 1)) + Piece.KNIGHT;
+            if (promotion < Piece.KNIGHT) return 0;
+            end -= 2;
+        } else if (type == Piece.PAWN && "NBRQnbrq".indexOf(san.charAt(end - 1)) >= 0) {
+            promotion = "NBRQ".indexOf(Character.toUpperCase(san.charAt(end - 1))) + Piece.KNIGHT;
+            end--;
+        }
+        if (end - i < 2) return 0;
+        int toFile = san.charAt(end - 2) - 'a', toRank = san.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) return 0;
+        int to = (7 - toRank) * 8 + toFile;
+        int fromFile = -1, fromRank = -1;
+        for (int j = i; j < end - 2; j++) {
+            char c = san.charAt(j);
+            if (c >= 'a' && c <= 'h') fromFile = c - 'a';
+            else if (c >= '1' && c <= '8') fromRank = c - '1';
+            else if (c != 'x' && c != '-' && c != ':') return 0;
+        }
+
+        int found = 0;
+        for (int k = 0; k < legal.size(); k++) {
+            int m = legal.get(k);
+            int from = Move.from(m);
+            if (Move.to(m) != to || board.getPiece(from).getType() != type) continue;
+            if (fromFile >= 0 && (from & 7) != fromFile) continue;
+            if (fromRank >= 0 && 7 - (from >> 3) != fromRank) continue;
+            if (Move.isPromotion(m) ? Move.promotionType(m) != promotion : promotion >= 0) continue;
+            if (found != 0) return AMBIGUOUS;
+            found = m;
+        }
+        return found;
+    }
+
+    // Square index of the square named at s[i..i+1], e.g. "e4", or -1
+    private static int square(String s, int i) {
+        if (i + 2 > s.length()) return -1;
+        int file = s.charAt(i) - 'a', rank = s.charAt(i + 1) - '1';
+        return file < 0 || file > 7 || rank < 0 || rank > 7 ? -1 : (7 - rank) * 8 + file;
+    }
+
+    // SAN of a legal move in the board's position, e.g. "Nbd7", "exd6", "e8=Q+" or "O-O#", with
+    // the file or rank of the origin added only when another piece of the same type could also
+    // go there. legal is a scratch list; the board is left unchanged.
+    public static String toSan(Board board, int move, MoveList legal) {
+        StringBuilder san = new StringBuilder(8);
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        if (flags == Move.KING_CASTLE) {
+            san.append("O-O");
+        } else if (flags == Move.QUEEN_CASTLE) {
+            san.append("O-O-O");
+        } else {
+            int type = board.getPiece(from).getType();
+            legal.clear();
+            board.generateLegalMoves(board.getSideToMove(), legal);
+            if (type == Piece.PAWN) {
+                if (Move.isCapture(move)) san.append((char) ('a' + (from & 7)));
+            } else {
+                san.append("PNBRQK".charAt(type));
+                boolean clash = false, sameFile = false, sameRank = false;
+                for (int k = 0; k < legal.size(); k++) {
+                    int other = Move.from(legal.get(k));
+                    if (Move.to(legal.get(k)) != to || other == from || board.getPiece(other).getType() != type) continue;
+                    clash = true;
+                    if ((other & 7) == (from & 7)) sameFile = true;
+                    if ((other >> 3) == (from >> 3)) sameRank = true;
+                }
+                if (clash && (!sameFile || sameRank)) san.append((char) ('a' + (from & 7)));
+                if (clash && sameFile) san.append((char) ('8' - (from >> 3)));
+            }
+            if (Move.isCapture(move)) san.append('x');
+            san.append((char) ('a' + (to & 7))).append((char) ('8' - (to >> 3)));
+            if (Move.isPromotion(move)) san.append('=').append("NBRQ".charAt(Move.promotionType(move) - Piece.KNIGHT));
+        }
+        board.makeMove(move);
+        if (board.isInCheck(board.getSideToMove())) {
+            legal.clear();
+            board.generateLegalMoves(board.getSideToMove(), legal);
+            san.append(legal.size() == 0 ? '#' : '+');
+        }
+        board.unmakeMove();
+        return san.toString();
+    }
+}
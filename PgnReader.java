@@ -0,0 +1,93 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+// Splits a PGN file of any size into the raw bytes of one game at a time. The file is memory-mapped
+// one window at a time, so only the current game is ever copied onto the heap. A game ends where a
+// tag line ('[' first on a line, outside a comment) follows movetext.
+final class PgnReader implements Closeable {
+    private static final long WINDOW = 1L << 26;   // 64 MB mapped at once
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowEnd;
+    private int carry = -1;             // first byte of the next game, read while ending this one
+
+    private byte[] game = new byte[4096];
+    private int length;
+    private long gameOffset;
+
+    public PgnReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    public long size() { return size; }
+
+    // Bytes read so far
+    public long position() { return window == null ? 0 : windowEnd - window.remaining(); }
+
+    // File offset where the game last returned by next() starts
+    public long gameOffset() { return gameOffset; }
+
+    // Raw bytes of the next game, or null at end of file
+    public byte[] next() throws IOException {
+        length = 0;
+        gameOffset = position() - (carry >= 0 ? 1 : 0);
+        boolean movetext = false, lineStart = true, tagLine = false, inComment = false, content = false;
+        if (carry >= 0) {
+            append(carry);
+            carry = -1;
+            lineStart = false;
+            tagLine = true;
+            content = true;
+        }
+        for (int b; (b = read()) >= 0; ) {
+            if (b == '\n') {
+                lineStart = true;
+            } else if (lineStart && b > ' ') {
+                lineStart = false;
+                tagLine = b == '[' && !inComment;
+                if (tagLine) {
+                    if (movetext) {
+                        carry = b;
+                        return Arrays.copyOf(game, length);
+                    }
+                } else if (b != '%') {
+                    movetext = true;
+                }
+            }
+            if (b == '\n') tagLine = false;
+            else if (b == '{' && !tagLine) inComment = true;
+            else if (b == '}') inComment = false;
+            if (b > ' ') content = true;
+            append(b);
+        }
+        return content ? Arrays.copyOf(game, length) : null;
+    }
+
+    private int read() throws IOException {
+        if (window == null || !window.hasRemaining()) {
+            if (windowEnd >= size) return -1;
+            long start = windowEnd;
+            long len = Math.min(WINDOW, size - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+            windowEnd = start + len;
+        }
+        return window.get() & 0xFF;
+    }
+
+    private void append(int b) {
+        if (length == game.length) game = Arrays.copyOf(game, length * 2);
+        game[length++] = (byte) b;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,58 @@
+// Abstract base class for all chess pieces
+abstract class Piece {
+    protected Color color;
+    protected Position position;
+    protected boolean hasMoved;
+
+    public Piece(Color color, Position position) {
+        this.color = color;
+        this.position = position;
+        this.hasMoved = false;
+    }
+
+    // Piece type codes used to index the board's bitboards
+    public static final int PAWN = 0, KNIGHT = 1, BISHOP = 2, ROOK = 3, QUEEN = 4, KING = 5;
+
+    // Whether the piece's movement rules allow from -> to on this board; king safety is not checked
+    public final boolean isValidMove(Position from, Position to, Board board) {
+        long start = Stats.start();
+        boolean valid = matchesMovePattern(from, to, board);
+        Stats.end(Stats.IS_VALID_MOVE, start);
+        return valid;
+    }
+
+    protected abstract boolean matchesMovePattern(Position from, Position to, Board board);
+    public abstract String getSymbol();
+    public abstract int getType();
+    // Appends the pseudo-legal moves of this piece standing on the given square
+    public abstract void generateMoves(int from, Board board, MoveList moves);
+    public Color getColor() { return color; }
+    public Position getPosition() { return position; }
+    public boolean hasMoved() { return hasMoved; }
+    public void setPosition(Position position) { this.position = position; this.hasMoved = true; }
+
+    public static Piece create(int type, Color color, Position position) {
+        switch (type) {
+            case PAWN: return new Pawn(color, position);
+            case KNIGHT: return new Knight(color, position);
+            case BISHOP: return new Bishop(color, position);
+            case ROOK: return new Rook(color, position);
+            case QUEEN: return new Queen(color, position);
+            default: return new King(color, position);
+        }
+    }
+
+    protected boolean isPathClear(Position from, Position to, Board board) {
+        return (Bitboards.between(from.getSquare(), to.getSquare()) & board.getOccupied()) == 0;
+    }
+
+    // Adds a quiet move or capture for every square in the target mask not held by our own pieces
+    protected void addTargets(int from, long targets, Board board, MoveList moves) {
+        targets &= ~board.getOccupancy(color);
+        long enemy = board.getOccupancy(color.opposite());
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            moves.add(Move.encode(from, to, (enemy & (1L << to)) != 0 ? Move.CAPTURE : Move.QUIET));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+// Position class
+class Position {
+    private static final Position[] SQUARES = new Position[64];
+    static { for (int sq = 0; sq < 64; sq++) SQUARES[sq] = new Position(sq >> 3, sq & 7); }
+
+    private int row, col;
+    public Position(int row, int col) { this.row = row; this.col = col; }
+    // Shared instance for a square index (row * 8 + col), avoids allocating in hot paths
+    public static Position of(int square) { return SQUARES[square]; }
+    public Position(String notation) {
+        if (notation == null || notation.length() != 2) {
+             this.row = -1; this.col = -1; return;
+        }
+        this.col = notation.charAt(0) - 'a';
+        this.row = 8 - (notation.charAt(1) - '0');
+    }
+    public int getRow() { return row; }
+    public int getCol() { return col; }
+    public int getSquare() { return row * 8 + col; }
+    public boolean isValid() { return row >= 0 && row < 8 && col >= 0 && col < 8; }
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Position p = (Position)obj;
+        return row == p.row && col == p.col;
+    }
+    @Override
+    public int hashCode() { return row * 8 + col; }
+    @Override
+    public String toString() { return "" + (char)('a' + col) + (8 - row); }
+}
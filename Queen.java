@@ -0,0 +1,23 @@
+// Queen
+class Queen extends Piece {
+    public Queen(Color color, Position pos) { super(color, pos); }
+    @Override
+    public void generateMoves(int from, Board board, MoveList moves) {
+        addTargets(from, Bitboards.queenAttacks(from, board.getOccupied()), board, moves);
+    }
+    @Override
+    protected boolean matchesMovePattern(Position from, Position to, Board board) {
+        int r = Math.abs(to.getRow() - from.getRow());
+        int c = Math.abs(to.getCol() - from.getCol());
+        boolean rookMove = from.getRow() == to.getRow() || from.getCol() == to.getCol();
+        boolean bishopMove = r == c;
+        if (!rookMove && !bishopMove) return false;
+        return isPathClear(from, to, board);
+    }
+    @Override
+    public String getSymbol() {
+        return color == Color.WHITE ? "Q" : "q";
+    }
+    @Override
+    public int getType() { return QUEEN; }
+}
@@ -0,0 +1,19 @@
+// Rook
+class Rook extends Piece {
+    public Rook(Color color, Position pos) { super(color, pos); }
+    @Override
+    public void generateMoves(int from, Board board, MoveList moves) {
+        addTargets(from, Bitboards.rookAttacks(from, board.getOccupied()), board, moves);
+    }
+    @Override
+    protected boolean matchesMovePattern(Position from, Position to, Board board) {
+        if (from.getRow() != to.getRow() && from.getCol() != to.getCol()) return false;
+        return isPathClear(from, to, board);
+    }
+    @Override
+    public String getSymbol() {
+        return color == Color.WHITE ? "R" : "r";
+    }
+    @Override
+    public int getType() { return ROOK; }
+}
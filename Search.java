@@ -0,0 +1,276 @@
+// Negamax alpha-beta search with iterative deepening, quiescence search on captures and
+// MVV-LVA / killer / history move ordering. Runs under a hard time budget and returns the
+// best move of the last completed iteration.
+final class Search {
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 128;
+    // Scores at or beyond this are mates: up to MAX_PLY plies of search plus a tablebase distance
+    // to mate probed at the last of them, which is always shorter than MAX_PLY
+    public static final int MATE_BOUND = MATE - 2 * MAX_PLY;
+
+    // Reported after every completed iteration
+    interface Listener {
+        void iterationDone(int depth, int score, long nodes, long elapsedMillis, int[] pv, int pvLength);
+    }
+
+    private final Board board;
+    private final TranspositionTable tt;
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][MoveList.CAPACITY];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[2][64 * 64];
+    private static final int HISTORY_LIMIT = 700_000;   // history scores stay below the killers'
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    private int threadId;           // Lazy SMP helper threads have ids above 0
+    private boolean ownsTable = true;
+    private Tablebases tablebases;  // probed at every node with few enough pieces; null if none
+    private Nnue.Accumulator network; // evaluates instead of the piece-square tables if set
+
+    private long nodes;
+    private long tbHits;
+    private long startNanos;
+    // When the time budget started and when it runs out; no deadline until a budget is set
+    private volatile long clockNanos, deadlineNanos = Long.MAX_VALUE;
+    private volatile boolean stopped;
+
+    public Search(Board board) {
+        this(board, new TranspositionTable(TranspositionTable.DEFAULT_MB));
+    }
+
+    public Search(Board board, TranspositionTable tt) {
+        this.board = board;
+        this.tt = tt;
+        for (int i = 0; i <= MAX_PLY; i++) moveLists[i] = new MoveList();
+    }
+
+    public long getNodes() { return nodes; }
+    public long getTablebaseHits() { return tbHits; }
+    public void setTablebases(Tablebases tablebases) { this.tablebases = tablebases; }
+    public void setNetwork(Nnue net) { this.network = net == null ? null : net.newAccumulator(); }
+    public TranspositionTable getTranspositionTable() { return tt; }
+
+    // Marks this search as one thread of a parallel search. The table's age is then advanced by the
+    // caller, and odd helpers start one iteration deeper so threads spread over different depths.
+    void setThreadId(int threadId) {
+        this.threadId = threadId;
+        this.ownsTable = false;
+    }
+
+    // Asks the search to return as soon as possible. The flag is not cleared when a search starts, so
+    // a stop that arrives before search() is not lost: the search then returns its first legal move at once.
+    public void stop() { stopped = true; }
+
+    // Makes a stopped or timed-out Search usable for the next search()
+    public void clearStop() {
+        stopped = false;
+        deadlineNanos = Long.MAX_VALUE;
+    }
+
+    // Gives a search started without a time limit (e.g. while pondering) a budget counted from now.
+    // It may be called before the search starts.
+    public void startClock(long timeMillis) {
+        clockNanos = System.nanoTime();
+        deadlineNanos = clockNanos + timeMillis * 1_000_000L;
+    }
+
+    // Searches the board's current position. Returns the best move found, or 0 if there is no legal move.
+    public int search(int maxDepth, long timeMillis, Listener listener) {
+        if (network == null) return iterate(maxDepth, timeMillis, listener);
+        // The board updates the network's accumulator on every move made during the search
+        Nnue.Accumulator previous = board.getAccumulator();
+        board.setAccumulator(network);
+        try {
+            return iterate(maxDepth, timeMillis, listener);
+        } finally {
+            board.setAccumulator(previous);
+        }
+    }
+
+    private int iterate(int maxDepth, long timeMillis, Listener listener) {
+        nodes = 0;
+        tbHits = 0;
+        startNanos = System.nanoTime();
+        if (timeMillis > 0) startClock(timeMillis);
+        for (int[] k : killers) { k[0] = 0; k[1] = 0; }
+        for (int[] h : history) java.util.Arrays.fill(h, 0);
+        if (ownsTable) tt.newSearch();
+        maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+
+        MoveList rootMoves = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), rootMoves);
+        if (rootMoves.isEmpty()) return 0;
+        // Positions in the tablebases are played from them: the shortest win or the longest loss
+        if (tablebases != null && Long.bitCount(board.getOccupied()) <= Tablebases.MAX_PIECES) {
+            int tbMove = tablebases.bestMove(board, moveLists[0]);
+            if (tbMove != 0) {
+                tbHits++;
+                board.makeMove(tbMove);
+                int score = -Tablebases.score(tablebases.probe(board), 1);
+                board.unmakeMove();
+                pv[0][0] = tbMove;
+                if (listener != null) listener.iterationDone(1, score, 0, (System.nanoTime() - startNanos) / 1_000_000L, pv[0], 1);
+                return tbMove;
+            }
+        }
+        int bestMove = rootMoves.get(0);
+        for (int depth = 1 + (threadId & 1); depth <= maxDepth; depth++) {
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (stopped) break;
+            bestMove = pv[0][0];
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+            if (listener != null) listener.iterationDone(depth, score, nodes, elapsedMillis, pv[0], pvLength[0]);
+            if (Math.abs(score) >= MATE_BOUND) break;
+            // The next iteration costs several times this one; don't start what can't finish
+            long deadline = deadlineNanos, clock = clockNanos;
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - clock > (deadline - clock) / 2) break;
+        }
+        return bestMove;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        if (ply > 0 && (board.getHalfmoveClock() >= 100 || board.isRepetition())) return 0;
+        if (depth <= 0) return quiescence(ply, alpha, beta);
+        if ((++nodes & 2047) == 0) checkTime();
+        if (stopped) return 0;
+        if (ply >= MAX_PLY - 1) return evaluate();
+        if (tablebases != null && ply > 0 && Long.bitCount(board.getOccupied()) <= Tablebases.MAX_PIECES) {
+            int value = tablebases.probe(board);
+            if (value != Tablebases.NOT_FOUND) {
+                tbHits++;
+                return Tablebases.score(value, ply);
+            }
+        }
+
+        long key = board.getHash();
+        long entry = tt.probe(key);
+        int ttMove = TranspositionTable.move(entry);
+        if (entry != 0 && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+            int ttScore = TranspositionTable.score(entry, ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && ttScore >= beta)
+                    || (bound == TranspositionTable.UPPER && ttScore <= alpha))
+                return ttScore;
+        }
+
+        int alphaOrig = alpha;
+        Color us = board.getSideToMove();
+        boolean inCheck = board.isInCheck(us);
+        if (inCheck) depth++;   // check extension
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        board.generateLegalMoves(us, moves);
+        if (moves.isEmpty()) return inCheck ? -MATE + ply : 0;
+        scoreMoves(moves, moveScores[ply], ply, ply == 0 ? pv[0][0] : ttMove);
+
+        int best = -INFINITY, bestMove = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, moveScores[ply], i);
+            board.makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (stopped) return 0;
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                }
+            }
+            if (alpha >= beta) {
+                if (!Move.isCapture(move)) {
+                    if (killers[ply][0] != move) { killers[ply][1] = killers[ply][0]; killers[ply][0] = move; }
+                    int[] h = history[us.ordinal()];
+                    // Halve the side's table once an entry passes the limit, so long searches keep
+                    // ordering by recent cutoffs instead of saturating or overflowing
+                    if ((h[move & 4095] += depth * depth) > HISTORY_LIMIT)
+                        for (int j = 0; j < h.length; j++) h[j] >>= 1;
+                }
+                break;
+            }
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER
+            : best > alphaOrig ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        tt.store(key, bestMove, best, depth, bound, ply);
+        return best;
+    }
+
+    private int quiescence(int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        if ((++nodes & 2047) == 0) checkTime();
+        if (stopped) return 0;
+        int standPat = evaluate();
+        if (ply >= MAX_PLY) return standPat;
+        if (standPat >= beta) return standPat;
+        if (standPat > alpha) alpha = standPat;
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        board.generateLegalCaptures(board.getSideToMove(), moves);
+        scoreMoves(moves, moveScores[ply], ply, 0);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, moveScores[ply], i);
+            board.makeMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (stopped) return 0;
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (alpha >= beta) break;
+            }
+        }
+        return alpha;
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][0] = move;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    private void checkTime() {
+        if (System.nanoTime() >= deadlineNanos) stopped = true;
+    }
+
+    // Ordering: previous best or hash move, captures by MVV-LVA, killers, then history
+    private void scoreMoves(MoveList moves, int[] scores, int ply, int pvMove) {
+        int side = board.getSideToMove().ordinal();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            if (move == pvMove) score = 2_000_000;
+            else if (Move.isCapture(move)) {
+                Piece victim = board.getPiece(Move.flags(move) == Move.EN_PASSANT ? Move.to(move) ^ 8 : Move.to(move));
+                int victimType = victim == null ? Piece.PAWN : victim.getType();
+                score = 1_000_000 + victimType * 10 - board.getPiece(Move.from(move)).getType();
+            }
+            else if (Move.isPromotion(move)) score = 900_000 + Move.promotionType(move);
+            else if (move == killers[ply][0]) score = 800_000;
+            else if (move == killers[ply][1]) score = 799_999;
+            else score = Math.min(history[side][move & 4095], HISTORY_LIMIT);
+            scores[i] = score;
+        }
+    }
+
+    // Selection sort step: swaps the best remaining move into slot i
+    private static int pickNext(MoveList moves, int[] scores, int i) {
+        int best = i;
+        for (int j = i + 1; j < moves.size(); j++) if (scores[j] > scores[best]) best = j;
+        if (best != i) {
+            int m = moves.get(i); moves.set(i, moves.get(best)); moves.set(best, m);
+            int s = scores[i]; scores[i] = scores[best]; scores[best] = s;
+        }
+        return moves.get(i);
+    }
+
+    // From the side to move's point of view; both evaluators read totals the board keeps incrementally
+    private int evaluate() {
+        return network != null ? network.evaluate(board.getSideToMove()) : Evaluation.evaluate(board);
+    }
+}
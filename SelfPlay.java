@@ -0,0 +1,537 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Self-play stress test of the rules engine. Worker threads play whole games through
+// ChessGame.makeMove (promotions included, without stdin), each move picked by a Chooser from the
+// engine's legal moves. Every position is checked against Oracle, a deliberately plain mailbox
+// move generator that shares no code with Board: both must produce the same legal moves, check
+// status and resulting position, ChessGame must accept the chosen move and reject an illegal
+// one, and the game must end exactly when the oracle finds no legal move (or on repetition).
+// A disagreement stops the game and is reported with the FEN it happened in.
+final class SelfPlay {
+    public static final int DEFAULT_PLIES = 400;
+    private static final long PROGRESS_NANOS = 5_000_000_000L;
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    // Picks the move to play from the legal moves of a position
+    interface Chooser {
+        int choose(Board board, MoveList legal, SplittableRandom random);
+    }
+
+    static final Chooser RANDOM = (board, legal, random) -> legal.get(random.nextInt(legal.size()));
+    static final Chooser FIRST_LEGAL = (board, legal, random) -> legal.get(0);
+
+    public static Chooser chooser(String name) {
+        switch (name) {
+            case "random": return RANDOM;
+            case "first": return FIRST_LEGAL;
+            default: throw new IllegalArgumentException("unknown chooser " + name);
+        }
+    }
+
+    // Timed phases of a ply
+    private static final String[] PHASES = {"oracle generate", "engine generate", "choose", "ChessGame.makeMove", "reject illegal", "verify position"};
+    private static final int ORACLE = 0, ENGINE = 1, CHOOSE = 2, MAKE_MOVE = 3, REJECT = 4, VERIFY = 5;
+
+    private final Chooser chooser;
+    private final long seed;
+    private final int maxPlies;
+    private final String fen;
+    private final int maxErrors;
+    private final PrintStream out;
+    private final PrintStream dump;   // every mismatch as "FEN ; description", or null
+
+    private final AtomicLong nextGame = new AtomicLong();
+    private final LongAdder games = new LongAdder(), plies = new LongAdder();
+    private final LongAdder checkmates = new LongAdder(), stalemates = new LongAdder();
+    private final LongAdder repetitions = new LongAdder(), plyLimits = new LongAdder();
+    private final LongAdder castles = new LongAdder(), enPassants = new LongAdder();
+    private final LongAdder promotions = new LongAdder(), underpromotions = new LongAdder();
+    private final LongAdder illegalTried = new LongAdder(), illegalRefused = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+    private final AtomicInteger mismatches = new AtomicInteger();
+
+    public SelfPlay(Chooser chooser, long seed, int maxPlies, String fen, int maxErrors, PrintStream out, PrintStream dump) {
+        this.chooser = chooser;
+        this.seed = seed;
+        this.maxPlies = maxPlies;
+        this.fen = fen;
+        this.maxErrors = maxErrors;
+        this.out = out;
+        this.dump = dump;
+        for (int i = 0; i < PHASES.length; i++) phaseNanos[i] = new LongAdder();
+    }
+
+    public long getGames() { return games.sum(); }
+    public long getPlies() { return plies.sum(); }
+    public int getMismatches() { return mismatches.get(); }
+
+    // Plays the given number of games on the given number of threads
+    public void run(long count, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "selfplay-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                Worker w = new Worker();
+                for (long g; (g = nextGame.getAndIncrement()) < count; ) w.play(g);
+            });
+        }
+        pool.shutdown();
+        long start = System.nanoTime(), lastReport = start;
+        while (!pool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+            long now = System.nanoTime();
+            if (now - lastReport >= PROGRESS_NANOS) {
+                lastReport = now;
+                out.printf("... %d games, %d plies, %.0f games/s%n", games.sum(), plies.sum(), games.sum() / ((now - start) / 1e9));
+            }
+        }
+    }
+
+    // Per thread: the oracle, scratch lists and this thread's phase clock
+    private final class Worker {
+        final Oracle oracle = new Oracle(), scratch = new Oracle();
+        final int[] oracleMoves = new int[MoveList.CAPACITY], engineMoves = new int[MoveList.CAPACITY];
+        final MoveList legal = new MoveList();
+        final long[] nanos = new long[PHASES.length];
+
+        void play(long index) {
+            SplittableRandom random = new SplittableRandom(seed + index);
+            ChessGame game = new ChessGame("White", "Black", DISCARD, null);
+            if (!fen.equals(Board.START_FEN)) game.loadFen(fen);
+            oracle.load(fen);
+            Arrays.fill(nanos, 0);
+            int ply = 0;
+            try {
+                for (; ; ply++) {
+                    Board board = game.getBoard();
+                    long t0 = System.nanoTime();
+                    int n = oracle.generate(oracleMoves, scratch);
+                    long t1 = System.nanoTime();
+                    legal.clear();
+                    board.generateLegalMoves(board.getSideToMove(), legal);
+                    long t2 = System.nanoTime();
+                    nanos[ORACLE] += t1 - t0;
+                    nanos[ENGINE] += t2 - t1;
+                    if (!sameMoves(n, index, ply, board)) return;
+                    if (oracle.inCheck() != board.isInCheck(board.getSideToMove())) {
+                        mismatch(index, ply, board, "check status differs: oracle says " + (oracle.inCheck() ? "in check" : "not in check"));
+                        return;
+                    }
+                    if (n == 0 || game.isGameOver()) {
+                        if (!game.isGameOver()) {
+                            mismatch(index, ply, board, "no legal moves but the game goes on");
+                        } else if (n > 0 && board.repetitionCount() < 3) {
+                            mismatch(index, ply, board, "game over with " + n + " legal moves and no repetition");
+                        } else {
+                            (n > 0 ? repetitions : oracle.inCheck() ? checkmates : stalemates).increment();
+                        }
+                        return;
+                    }
+                    if (ply == maxPlies) {
+                        plyLimits.increment();
+                        return;
+                    }
+
+                    long t3 = System.nanoTime();
+                    int move = chooser.choose(board, legal, random);
+                    long t4 = System.nanoTime();
+                    if (!rejectsIllegal(game, n, random, index, ply)) return;
+                    long t5 = System.nanoTime();
+                    String from = Position.of(Move.from(move)).toString(), to = Position.of(Move.to(move)).toString();
+                    int promotion = Move.isPromotion(move) ? Move.promotionType(move) : Piece.QUEEN;
+                    long t6 = System.nanoTime();
+                    boolean accepted = game.makeMove(from, to, promotion);
+                    long t7 = System.nanoTime();
+                    nanos[CHOOSE] += t4 - t3;
+                    nanos[REJECT] += t5 - t4;
+                    nanos[MAKE_MOVE] += t7 - t6;
+                    if (!accepted) {
+                        mismatch(index, ply, board, "ChessGame rejected legal move " + Move.notation(move));
+                        return;
+                    }
+                    count(move);
+                    oracle.play(Oracle.key(move));
+                    boolean same = samePosition(game.getBoard());
+                    nanos[VERIFY] += System.nanoTime() - t7;
+                    if (!same) {
+                        mismatch(index, ply, game.getBoard(), "position after " + Move.notation(move) + " differs from the oracle's " + oracle);
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                mismatch(index, ply, game.getBoard(), "exception " + e);
+            } finally {
+                games.increment();
+                plies.add(ply);
+                for (int i = 0; i < PHASES.length; i++) phaseNanos[i].add(nanos[i]);
+            }
+        }
+
+        private boolean sameMoves(int n, long index, int ply, Board board) {
+            int m = legal.size();
+            for (int i = 0; i < m; i++) engineMoves[i] = Oracle.key(legal.get(i));
+            Arrays.sort(oracleMoves, 0, n);
+            Arrays.sort(engineMoves, 0, m);
+            if (n == m && Arrays.equals(oracleMoves, 0, n, engineMoves, 0, m)) return true;
+            StringBuilder only = new StringBuilder("legal moves differ; engine only:");
+            for (int i = 0; i < m; i++) if (Arrays.binarySearch(oracleMoves, 0, n, engineMoves[i]) < 0) only.append(' ').append(Oracle.notation(engineMoves[i]));
+            only.append("; oracle only:");
+            for (int i = 0; i < n; i++) if (Arrays.binarySearch(engineMoves, 0, m, oracleMoves[i]) < 0) only.append(' ').append(Oracle.notation(oracleMoves[i]));
+            mismatch(index, ply, board, only.toString());
+            return false;
+        }
+
+        // Tries a random move of a piece of the side to move that the oracle says is illegal
+        private boolean rejectsIllegal(ChessGame game, int n, SplittableRandom random, long index, int ply) {
+            Board board = game.getBoard();
+            long pieces = board.getOccupancy(board.getSideToMove());
+            int from = Long.numberOfTrailingZeros(pieces);
+            for (int skip = random.nextInt(Long.bitCount(pieces)); skip > 0; skip--) {
+                pieces &= pieces - 1;
+                from = Long.numberOfTrailingZeros(pieces);
+            }
+            int to = random.nextInt(64);
+            int key = from | to << 6;
+            boolean promotes = board.getPiece(from).getType() == Piece.PAWN && (to >> 3 == 0 || to >> 3 == 7);
+            if (promotes) key |= Piece.QUEEN << 12;
+            if (Arrays.binarySearch(oracleMoves, 0, n, key) >= 0) return true;   // legal after all
+            long hash = board.getHash();
+            illegalTried.increment();
+            if (game.makeMove(Position.of(from).toString(), Position.of(to).toString(), Piece.QUEEN) || board.getHash() != hash) {
+                mismatch(index, ply, board, "ChessGame accepted illegal move " + Oracle.notation(key));
+                return false;
+            }
+            illegalRefused.increment();
+            return true;
+        }
+
+        private boolean samePosition(Board board) {
+            for (int sq = 0; sq < 64; sq++) {
+                Piece p = board.getPiece(sq);
+                int expected = p == null ? 0 : (p.getColor() == Color.WHITE ? 1 : -1) * (p.getType() + 1);
+                if (oracle.squares[sq] != expected) return false;
+            }
+            return (board.getSideToMove() == Color.WHITE) == (oracle.side == 1) && board.getCastlingRights() == oracle.castling;
+        }
+
+        private void count(int move) {
+            int flags = Move.flags(move);
+            if (flags == Move.KING_CASTLE || flags == Move.QUEEN_CASTLE) castles.increment();
+            else if (flags == Move.EN_PASSANT) enPassants.increment();
+            else if (Move.isPromotion(move)) {
+                promotions.increment();
+                if (Move.promotionType(move) != Piece.QUEEN) underpromotions.increment();
+            }
+        }
+    }
+
+    private void mismatch(long game, int ply, Board board, String description) {
+        int n = mismatches.incrementAndGet();
+        String fen = board.toFen();
+        if (n <= maxErrors) out.printf("Mismatch in game %d (seed %d) at ply %d: %s%n  FEN %s%n", game, seed + game, ply, description, fen);
+        if (dump != null) {
+            synchronized (dump) {
+                dump.println(fen + " ; game " + game + " ply " + ply + ": " + description);
+            }
+        }
+    }
+
+    public void report(double seconds, int threads) {
+        long g = games.sum(), p = plies.sum();
+        out.printf("%d games, %d plies in %.2f s on %d threads: %.0f games/s, %.0f plies/s%n", g, p, seconds, threads, g / seconds, p / seconds);
+        out.printf("Endings: checkmate %d, stalemate %d, repetition %d, ply limit %d%n",
+            checkmates.sum(), stalemates.sum(), repetitions.sum(), plyLimits.sum());
+        out.printf("Special moves: castling %d, en passant %d, promotion %d (%d underpromotions)%n",
+            castles.sum(), enPassants.sum(), promotions.sum(), underpromotions.sum());
+        out.printf("Illegal moves: %d tried, %d refused%n", illegalTried.sum(), illegalRefused.sum());
+        long total = 0;
+        for (LongAdder a : phaseNanos) total += a.sum();
+        out.printf("%-20s %10s %10s %8s%n", "Phase", "thread s", "ns/ply", "share");
+        for (int i = 0; i < PHASES.length; i++) {
+            long ns = phaseNanos[i].sum();
+            out.printf("%-20s %10.2f %10.0f %7.1f%%%n", PHASES[i], ns / 1e9, (double) ns / Math.max(p, 1), 100.0 * ns / Math.max(total, 1));
+        }
+        out.printf("Mismatches: %d%n", mismatches.get());
+    }
+
+    // Independent move generator over a plain mailbox: pieces are +(type + 1) for White and
+    // -(type + 1) for Black, squares a8 = 0 to h1 = 63 as in Board. Written for obviousness, not
+    // speed: every pseudo-legal move is tried on a copy and kept if its king is not attacked.
+    static final class Oracle {
+        private static final int[][] KNIGHT = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+        private static final int[][] KING = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+        private static final int[][] DIAGONAL = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+        private static final int[][] STRAIGHT = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        private static final int P = Piece.PAWN + 1, N = Piece.KNIGHT + 1, B = Piece.BISHOP + 1,
+            R = Piece.ROOK + 1, Q = Piece.QUEEN + 1, K = Piece.KING + 1;
+
+        final int[] squares = new int[64];
+        int side;           // 1 White, -1 Black
+        int castling;       // Board's bits: White kingside 1, queenside 2, Black kingside 4, queenside 8
+        int enPassant = -1; // square passed over by the last double push
+
+        // from | to << 6 | promotion type << 12 (0 when not promoting)
+        static int key(int packed) {
+            return Move.from(packed) | Move.to(packed) << 6 | (Move.isPromotion(packed) ? Move.promotionType(packed) << 12 : 0);
+        }
+
+        static String notation(int key) {
+            int from = key & 63, to = key >> 6 & 63, promotion = key >> 12;
+            return name(from) + name(to) + (promotion == 0 ? "" : String.valueOf("pnbrqk".charAt(promotion)));
+        }
+
+        private static String name(int sq) {
+            return "" + (char) ('a' + sq % 8) + (char) ('8' - sq / 8);
+        }
+
+        void load(String fen) {
+            String[] f = fen.trim().split("\\s+");
+            Arrays.fill(squares, 0);
+            int sq = 0;
+            for (char c : f[0].toCharArray()) {
+                if (c == '/') continue;
+                if (Character.isDigit(c)) { sq += c - '0'; continue; }
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c)) + 1;
+                squares[sq++] = Character.isUpperCase(c) ? type : -type;
+            }
+            side = f.length > 1 && f[1].equals("b") ? -1 : 1;
+            castling = 0;
+            if (f.length > 2) {
+                if (f[2].contains("K")) castling |= 1;
+                if (f[2].contains("Q")) castling |= 2;
+                if (f[2].contains("k")) castling |= 4;
+                if (f[2].contains("q")) castling |= 8;
+            }
+            enPassant = f.length > 3 && !f[3].equals("-") ? (8 - (f[3].charAt(1) - '0')) * 8 + (f[3].charAt(0) - 'a') : -1;
+        }
+
+        void copyFrom(Oracle o) {
+            System.arraycopy(o.squares, 0, squares, 0, 64);
+            side = o.side;
+            castling = o.castling;
+            enPassant = o.enPassant;
+        }
+
+        boolean inCheck() { return attacked(king(side), -side); }
+
+        private int king(int color) {
+            for (int sq = 0; sq < 64; sq++) if (squares[sq] == color * K) return sq;
+            return -1;
+        }
+
+        // Legal moves into out; scratch is used to try them
+        int generate(int[] out, Oracle scratch) {
+            int n = 0;
+            for (int from = 0; from < 64; from++) {
+                int piece = squares[from] * side;
+                if (piece <= 0) continue;
+                int r = from / 8, c = from % 8;
+                switch (piece) {
+                    case P: {
+                        int dir = -side, promoRow = side == 1 ? 0 : 7, startRow = side == 1 ? 6 : 1;
+                        if (on(r + dir, c) && squares[(r + dir) * 8 + c] == 0) {
+                            n = addPawn(out, n, scratch, from, (r + dir) * 8 + c, r + dir == promoRow);
+                            if (r == startRow && squares[(r + 2 * dir) * 8 + c] == 0)
+                                n = add(out, n, scratch, from, (r + 2 * dir) * 8 + c, 0);
+                        }
+                        for (int dc = -1; dc <= 1; dc += 2) {
+                            if (!on(r + dir, c + dc)) continue;
+                            int to = (r + dir) * 8 + c + dc;
+                            if (squares[to] * side < 0 || to == enPassant) n = addPawn(out, n, scratch, from, to, r + dir == promoRow);
+                        }
+                        break;
+                    }
+                    case N: n = steps(out, n, scratch, from, KNIGHT); break;
+                    case B: n = slides(out, n, scratch, from, DIAGONAL); break;
+                    case R: n = slides(out, n, scratch, from, STRAIGHT); break;
+                    case Q: n = slides(out, n, scratch, from, DIAGONAL); n = slides(out, n, scratch, from, STRAIGHT); break;
+                    case K: n = steps(out, n, scratch, from, KING); n = castles(out, n, scratch, from); break;
+                    default: break;
+                }
+            }
+            return n;
+        }
+
+        private int addPawn(int[] out, int n, Oracle scratch, int from, int to, boolean promotes) {
+            if (!promotes) return add(out, n, scratch, from, to, 0);
+            for (int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) n = add(out, n, scratch, from, to, type);
+            return n;
+        }
+
+        private int steps(int[] out, int n, Oracle scratch, int from, int[][] deltas) {
+            int r = from / 8, c = from % 8;
+            for (int[] d : deltas) {
+                if (!on(r + d[0], c + d[1])) continue;
+                int to = (r + d[0]) * 8 + c + d[1];
+                if (squares[to] * side <= 0) n = add(out, n, scratch, from, to, 0);
+            }
+            return n;
+        }
+
+        private int slides(int[] out, int n, Oracle scratch, int from, int[][] rays) {
+            int r = from / 8, c = from % 8;
+            for (int[] d : rays) {
+                for (int rr = r + d[0], cc = c + d[1]; on(rr, cc); rr += d[0], cc += d[1]) {
+                    int to = rr * 8 + cc;
+                    if (squares[to] * side > 0) break;
+                    n = add(out, n, scratch, from, to, 0);
+                    if (squares[to] != 0) break;
+                }
+            }
+            return n;
+        }
+
+        private int castles(int[] out, int n, Oracle scratch, int from) {
+            int home = side == 1 ? 60 : 4, kingside = side == 1 ? 1 : 4, queenside = side == 1 ? 2 : 8;
+            if (from != home || attacked(home, -side)) return n;
+            if ((castling & kingside) != 0 && squares[home + 3] == side * R && squares[home + 1] == 0 && squares[home + 2] == 0
+                    && !attacked(home + 1, -side) && !attacked(home + 2, -side))
+                n = add(out, n, scratch, from, home + 2, 0);
+            if ((castling & queenside) != 0 && squares[home - 4] == side * R && squares[home - 1] == 0 && squares[home - 2] == 0
+                    && squares[home - 3] == 0 && !attacked(home - 1, -side) && !attacked(home - 2, -side))
+                n = add(out, n, scratch, from, home - 2, 0);
+            return n;
+        }
+
+        // Adds the move if it does not leave the mover's king attacked
+        private int add(int[] out, int n, Oracle scratch, int from, int to, int promotion) {
+            int key = from | to << 6 | promotion << 12;
+            scratch.copyFrom(this);
+            scratch.play(key);
+            if (!scratch.attacked(scratch.king(side), -side)) out[n++] = key;
+            return n;
+        }
+
+        void play(int key) {
+            int from = key & 63, to = key >> 6 & 63, promotion = key >> 12;
+            int piece = squares[from];
+            if (Math.abs(piece) == P && to == enPassant && squares[to] == 0) squares[to + 8 * side] = 0;
+            if (Math.abs(piece) == K && Math.abs(to - from) == 2) {
+                int rookFrom = to > from ? from + 3 : from - 4, rookTo = to > from ? from + 1 : from - 1;
+                squares[rookTo] = squares[rookFrom];
+                squares[rookFrom] = 0;
+            }
+            squares[to] = promotion != 0 ? side * (promotion + 1) : piece;
+            squares[from] = 0;
+            enPassant = Math.abs(piece) == P && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+            castling &= ~(lost(from) | lost(to));
+            side = -side;
+        }
+
+        // Castling rights lost when a move starts or ends on the square
+        private static int lost(int sq) {
+            switch (sq) {
+                case 60: return 3;
+                case 63: return 1;
+                case 56: return 2;
+                case 4: return 12;
+                case 7: return 4;
+                case 0: return 8;
+                default: return 0;
+            }
+        }
+
+        // True if a piece of color `by` attacks the square
+        boolean attacked(int sq, int by) {
+            int r = sq / 8, c = sq % 8;
+            int pawnRow = r + by;   // a White pawn attacks from the row below (higher index)
+            for (int dc = -1; dc <= 1; dc += 2) if (on(pawnRow, c + dc) && squares[pawnRow * 8 + c + dc] == by * P) return true;
+            for (int[] d : KNIGHT) if (on(r + d[0], c + d[1]) && squares[(r + d[0]) * 8 + c + d[1]] == by * N) return true;
+            for (int[] d : KING) if (on(r + d[0], c + d[1]) && squares[(r + d[0]) * 8 + c + d[1]] == by * K) return true;
+            return ray(r, c, DIAGONAL, by * B, by * Q) || ray(r, c, STRAIGHT, by * R, by * Q);
+        }
+
+        private boolean ray(int r, int c, int[][] rays, int slider, int queen) {
+            for (int[] d : rays) {
+                for (int rr = r + d[0], cc = c + d[1]; on(rr, cc); rr += d[0], cc += d[1]) {
+                    int p = squares[rr * 8 + cc];
+                    if (p == slider || p == queen) return true;
+                    if (p != 0) break;
+                }
+            }
+            return false;
+        }
+
+        private static boolean on(int r, int c) { return r >= 0 && r < 8 && c >= 0 && c < 8; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int r = 0; r < 8; r++) {
+                int empty = 0;
+                for (int c = 0; c < 8; c++) {
+                    int p = squares[r * 8 + c];
+                    if (p == 0) { empty++; continue; }
+                    if (empty > 0) { sb.append(empty); empty = 0; }
+                    char ch = "pnbrqk".charAt(Math.abs(p) - 1);
+                    sb.append(p > 0 ? Character.toUpperCase(ch) : ch);
+                }
+                if (empty > 0) sb.append(empty);
+                if (r < 7) sb.append('/');
+            }
+            sb.append(side == 1 ? " w " : " b ");
+            if (castling == 0) sb.append('-');
+            for (int bit = 0; bit < 4; bit++) if ((castling & 1 << bit) != 0) sb.append("KQkq".charAt(bit));
+            return sb.toString();
+        }
+    }
+
+    // selfplay <games> [threads <n>] [chooser random|first] [seed <n>] [plies <n>] [fen <FEN>] [errors <n>] [dump <file>]
+    public static void run(String[] args) {
+        long count;
+        int threads = Runtime.getRuntime().availableProcessors(), maxPlies = DEFAULT_PLIES, maxErrors = 20;
+        long seed = 1;
+        String fen = Board.START_FEN, dumpFile = null, chooserName = "random";
+        Chooser chooser;
+        try {
+            count = Long.parseLong(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("threads")) threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("chooser")) chooserName = args[++i];
+                else if (args[i].equals("seed")) seed = Long.parseLong(args[++i]);
+                else if (args[i].equals("plies")) maxPlies = Integer.parseInt(args[++i]);
+                else if (args[i].equals("errors")) maxErrors = Integer.parseInt(args[++i]);
+                else if (args[i].equals("dump")) dumpFile = args[++i];
+                else if (args[i].equals("fen")) {
+                    // The FEN's fields run to the end of the line
+                    fen = String.join(" ", Arrays.copyOfRange(args, i + 1, args.length));
+                    break;
+                }
+                else throw new IllegalArgumentException(args[i]);
+            }
+            chooser = chooser(chooserName);
+            if (count < 1 || threads < 1 || maxPlies < 1) throw new IllegalArgumentException();
+            String problem = new Board(fen).validatePosition();
+            if (problem != null) throw new IllegalArgumentException(problem);
+        } catch (RuntimeException e) {
+            System.out.println("Usage: java ChessMain selfplay <games> [threads <n>] [chooser random|first] [seed <n>] [plies <n>] [errors <n>] [dump <file>] [fen <FEN>]");
+            return;
+        }
+        PrintStream dump = null;
+        try {
+            if (dumpFile != null) dump = new PrintStream(Files.newOutputStream(Paths.get(dumpFile)), true, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Cannot write " + dumpFile + ": " + e.getMessage());
+            return;
+        }
+        System.out.printf("Self-play: %d games on %d threads, chooser %s, seed %d, at most %d plies%n", count, threads, chooserName, seed, maxPlies);
+        SelfPlay selfPlay = new SelfPlay(chooser, seed, maxPlies, fen, maxErrors, System.out, dump);
+        long start = System.nanoTime();
+        try {
+            selfPlay.run(count, threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        selfPlay.report(Math.max(System.nanoTime() - start, 1) / 1e9, threads);
+        if (dump != null) dump.close();
+    }
+}
@@ -0,0 +1,409 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Solves EPD files of puzzles in batch. Records are streamed from the file and solved on a
+// work-stealing pool, one task per position, so a few hard positions do not hold up the rest;
+// at most a window of positions is in flight, and results are written in input order as soon
+// as all earlier ones are done, so files of any size run in constant memory.
+//
+// A record with a "dm n" operation (or any record when a mate length is given on the command
+// line) is solved by a dedicated mate search: depth-limited AND/OR search for the shortest mate,
+// trying checking moves first and at the last move only checking moves, with a table of
+// positions proven to have no mate within a given length. Other records get a normal engine
+// search, and the move found is compared with their "bm" (best move) and "am" (avoid move)
+// operations.
+final class Solver {
+    public static final int DEFAULT_DEPTH = 8;
+    public static final int MAX_MATE = 16;   // moves
+    private static final long PROGRESS_NANOS = 5_000_000_000L;
+
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final int mateLength;    // forced mate search up to this many moves; 0 to use dm operations only
+    private final int depth;         // engine search depth for best-move records
+    private final long timeMillis;   // per position, for both searches; 0 for no limit
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    private final LongAdder positions = new LongAdder(), solved = new LongAdder(), failed = new LongAdder(), found = new LongAdder();
+    private final LongAdder unsolved = new LongAdder(), invalid = new LongAdder(), nodes = new LongAdder();
+    private final LatencyHistogram solveTimes = new LatencyHistogram();
+
+    public Solver(int threads, int mateLength, int depth, long timeMillis) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (mateLength < 0 || mateLength > MAX_MATE) throw new IllegalArgumentException("mate length must be 0 to " + MAX_MATE);
+        this.pool = new ForkJoinPool(threads);
+        this.threads = threads;
+        this.mateLength = mateLength;
+        this.depth = depth;
+        this.timeMillis = timeMillis;
+    }
+
+    public long getPositions() { return positions.sum(); }
+    public long getSolved() { return solved.sum(); }
+    public long getFailed() { return failed.sum(); }
+    public long getUnsolved() { return unsolved.sum(); }
+    public long getInvalid() { return invalid.sum(); }
+    public long getNodes() { return nodes.sum(); }
+
+    public void shutdown() { pool.shutdownNow(); }
+
+    // Solves every record of the input, writing one result line per record in input order
+    public void solve(Path input, Writer output, PrintStream progress) throws IOException, InterruptedException {
+        int window = threads * 64;
+        Semaphore slots = new Semaphore(window);
+        Results results = new Results(output, window, slots);
+        output.write("# line\tid\tresult\tmove\teval\tnodes\tms\n");
+        long start = System.nanoTime(), lastProgress = start;
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1)) {
+            long lineNumber = 0, seq = 0;
+            for (String line; (line = in.readLine()) != null; ) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                slots.acquire();
+                long s = seq++, n = lineNumber;
+                String record = line;
+                pool.execute(() -> {
+                    String result;
+                    try {
+                        result = solveRecord(n, record);
+                    } catch (RuntimeException e) {
+                        invalid.increment();
+                        result = n + "\t-\tinvalid\t-\t" + e + "\t0\t0\n";
+                    }
+                    results.put(s, result);
+                });
+                if (progress != null && System.nanoTime() - lastProgress > PROGRESS_NANOS) {
+                    lastProgress = System.nanoTime();
+                    progress.printf("... %d positions, %.0f/s%n", positions.sum(), positions.sum() / ((lastProgress - start) / 1e9));
+                }
+            }
+        }
+        // Every result has been written once all slots are back
+        slots.acquire(window);
+        slots.release(window);
+        results.rethrow();
+        output.flush();
+    }
+
+    // Writes results in input order: a result waits in the ring until all earlier ones are out,
+    // and its slot is released only then, so no more than `window` results are ever held
+    private static final class Results {
+        private final Writer out;
+        private final String[] ring;
+        private final Semaphore slots;
+        private long next;
+        private IOException error;
+
+        Results(Writer out, int window, Semaphore slots) {
+            this.out = out;
+            this.ring = new String[window];
+            this.slots = slots;
+        }
+
+        synchronized void put(long seq, String line) {
+            ring[(int) (seq % ring.length)] = line;
+            for (int i; ring[i = (int) (next % ring.length)] != null; next++) {
+                try {
+                    if (error == null) out.write(ring[i]);
+                } catch (IOException e) {
+                    error = e;
+                }
+                ring[i] = null;
+                slots.release();
+            }
+        }
+
+        synchronized void rethrow() throws IOException {
+            if (error != null) throw error;
+        }
+    }
+
+    // Per worker thread: the board, the engine search and the mate search state
+    private final class Worker {
+        final Board board = new Board();
+        final Search search = new Search(board, new TranspositionTable(TranspositionTable.DEFAULT_MB));
+        final MateSearch mate = new MateSearch(board);
+        final MoveList legal = new MoveList();
+    }
+
+    // One output line for an EPD record
+    private String solveRecord(long lineNumber, String record) {
+        long start = System.nanoTime();
+        positions.increment();
+        Worker w = workers.get();
+        Epd epd = Epd.parse(record);
+        String id = epd == null ? null : epd.operation("id");
+        String prefix = lineNumber + "\t" + (id == null ? "-" : id) + "\t";
+        int expectedMate;
+        try {
+            if (epd == null) throw new IllegalArgumentException("malformed EPD");
+            w.board.loadFen(epd.fen);
+            String problem = w.board.validatePosition();
+            if (problem != null) throw new IllegalArgumentException(problem);
+            String dm = epd.operation("dm");
+            expectedMate = dm == null ? 0 : parseMate(dm);
+        } catch (IllegalArgumentException e) {
+            invalid.increment();
+            return prefix + "invalid\t-\t" + e.getMessage() + "\t0\t0\n";
+        }
+        Board board = w.board;
+        int[] bestMoves = moves(board, epd.operation("bm"), w.legal);
+        int[] avoidMoves = moves(board, epd.operation("am"), w.legal);
+        int maxMate = expectedMate > 0 ? expectedMate : mateLength;
+
+        String result, eval;
+        int move;
+        long searched;
+        if (maxMate > 0) {
+            int found = w.mate.solve(maxMate, timeMillis);
+            move = found > 0 ? w.mate.getMove() : 0;
+            searched = w.mate.getNodes();
+            eval = found > 0 ? "mate " + found : w.mate.isStopped() ? "timeout" : "no mate in " + maxMate;
+            if (found == 0) result = "unsolved";
+            else if (expectedMate > 0 && found > expectedMate) result = "failed";   // cannot happen with a sound dm
+            else if (bestMoves.length > 0 && !contains(bestMoves, move)) result = "failed";
+            else result = "solved";
+        } else {
+            int[] score = new int[1];
+            w.search.clearStop();
+            move = w.search.search(depth, timeMillis, (d, s, n, ms, pv, len) -> score[0] = s);
+            searched = w.search.getNodes();
+            eval = Math.abs(score[0]) >= Search.MATE_BOUND
+                ? "mate " + (score[0] > 0 ? (Search.MATE - score[0] + 1) / 2 : -(Search.MATE + score[0]) / 2)
+                : "cp " + score[0];
+            if (move == 0) result = "unsolved";
+            else if (bestMoves.length == 0 && avoidMoves.length == 0) result = "found";
+            else if (bestMoves.length > 0 && !contains(bestMoves, move) || contains(avoidMoves, move)) result = "failed";
+            else result = "solved";
+        }
+        (result.equals("failed") ? failed : result.equals("unsolved") ? unsolved : result.equals("found") ? found : solved).increment();
+        nodes.add(searched);
+        long elapsed = System.nanoTime() - start;
+        solveTimes.record(elapsed);
+        String san = move == 0 ? "-" : Pgn.toSan(board, move, w.legal);
+        return prefix + result + "\t" + san + "\t" + eval + "\t" + searched + "\t" + String.format("%.3f", elapsed / 1e6) + "\n";
+    }
+
+    private static int parseMate(String dm) {
+        try {
+            int n = Integer.parseInt(dm.trim());
+            if (n < 1 || n > MAX_MATE) throw new IllegalArgumentException("dm " + dm + " out of range 1 to " + MAX_MATE);
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad dm " + dm);
+        }
+    }
+
+    // Packed moves for the SAN list of a bm or am operation; unknown moves are left out
+    private static int[] moves(Board board, String sanList, MoveList legal) {
+        if (sanList == null) return new int[0];
+        String[] sans = sanList.trim().split("\\s+");
+        int[] moves = new int[sans.length];
+        int n = 0;
+        for (String san : sans) {
+            int m = Pgn.parseSan(board, san, legal);
+            if (m != 0 && m != Pgn.AMBIGUOUS) moves[n++] = m;
+        }
+        return Arrays.copyOf(moves, n);
+    }
+
+    private static boolean contains(int[] moves, int move) {
+        for (int m : moves) if (m == move) return true;
+        return false;
+    }
+
+    public void printSummary(PrintStream out, double seconds) {
+        long n = positions.sum();
+        out.printf("%d positions: %d solved, %d failed, %d unsolved, %d invalid, %d analysed without bm, am or dm%n",
+            n, solved.sum(), failed.sum(), unsolved.sum(), invalid.sum(), found.sum());
+        out.printf("%.2f s on %d threads: %.0f positions/s, %d nodes%n", seconds, threads, n / seconds, nodes.sum());
+        out.printf("Solve time: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", solveTimes.getMean() / 1e6,
+            solveTimes.getPercentile(50) / 1e6, solveTimes.getPercentile(99) / 1e6, solveTimes.getPercentile(100) / 1e6);
+    }
+
+    // An EPD record: the four position fields and the operations after them ("opcode operand...;")
+    static final class Epd {
+        final String fen;
+        private final Map<String, String> operations = new HashMap<>();
+
+        private Epd(String fen) { this.fen = fen; }
+
+        // The operands of an operation with string quotes removed, or null if absent
+        String operation(String opcode) { return operations.get(opcode); }
+
+        static Epd parse(String line) {
+            String[] fields = line.trim().split("\\s+", 5);
+            if (fields.length < 4) return null;
+            Epd epd = new Epd(String.join(" ", Arrays.copyOf(fields, 4)));
+            if (fields.length == 5) {
+                StringBuilder op = new StringBuilder();
+                boolean quoted = false;
+                for (char c : fields[4].toCharArray()) {
+                    if (c == '"') quoted = !quoted;
+                    else if (c == ';' && !quoted) {
+                        epd.add(op.toString());
+                        op.setLength(0);
+                    } else op.append(c);
+                }
+                epd.add(op.toString());
+            }
+            return epd;
+        }
+
+        private void add(String operation) {
+            String[] parts = operation.trim().split("\\s+", 2);
+            if (!parts[0].isEmpty()) operations.putIfAbsent(parts[0], parts.length > 1 ? parts[1].trim() : "");
+        }
+    }
+
+    // Finds the shortest forced mate for the side to move. mates(n) is true if some move wins
+    // against every reply within n moves; it tries checking moves first, and only checking moves
+    // when n is 1 since nothing else mates at once. Positions where the attacker was proven to have
+    // no mate within some length are remembered by hash, which makes each deepening iteration
+    // cheap over the positions the previous one already refuted.
+    static final class MateSearch {
+        private static final int TABLE_BITS = 18;
+
+        private final Board board;
+        private final MoveList[] lists = new MoveList[2 * MAX_MATE + 1];
+        private final int[][] order = new int[2 * MAX_MATE + 1][MoveList.CAPACITY];
+        private final long[] keys = new long[1 << TABLE_BITS];
+        private final byte[] noMate = new byte[1 << TABLE_BITS];   // no mate within this many moves
+        private long nodes;
+        private long deadlineNanos;
+        private boolean stopped;
+        private int move;
+
+        MateSearch(Board board) {
+            this.board = board;
+            for (int i = 0; i < lists.length; i++) lists[i] = new MoveList();
+        }
+
+        public long getNodes() { return nodes; }
+        public boolean isStopped() { return stopped; }
+        // The first move of the mate found by the last solve()
+        public int getMove() { return move; }
+
+        // Length in moves of the shortest mate within maxMoves, or 0 if none was found in time
+        public int solve(int maxMoves, long timeMillis) {
+            nodes = 0;
+            move = 0;
+            stopped = false;
+            deadlineNanos = timeMillis > 0 ? System.nanoTime() + timeMillis * 1_000_000L : Long.MAX_VALUE;
+            for (int n = 1; n <= maxMoves; n++) {
+                if (mates(n, 0)) return n;
+                if (stopped) break;
+            }
+            return 0;
+        }
+
+        private boolean mates(int n, int ply) {
+            if ((++nodes & 1023) == 0 && System.nanoTime() > deadlineNanos) stopped = true;
+            if (stopped) return false;
+            long hash = board.getHash();
+            int slot = (int) hash & (keys.length - 1);
+            if (keys[slot] == hash && noMate[slot] >= n) return false;
+
+            Color attacker = board.getSideToMove(), defender = attacker.opposite();
+            MoveList moves = lists[ply];
+            moves.clear();
+            board.generateLegalMoves(attacker, moves);
+            // Checks first, captures next, each group in generation order
+            int[] ordered = order[ply];
+            int count = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                int m = moves.get(i);
+                board.makeMove(m);
+                boolean check = board.isInCheck(defender);
+                board.unmakeMove();
+                if (check) {
+                    ordered[count++] = m;
+                    moves.set(i, 0);   // taken
+                }
+            }
+            if (n > 1) {
+                for (int i = 0; i < moves.size(); i++) if (moves.get(i) != 0 && Move.isCapture(moves.get(i))) ordered[count++] = moves.get(i);
+                for (int i = 0; i < moves.size(); i++) if (moves.get(i) != 0 && !Move.isCapture(moves.get(i))) ordered[count++] = moves.get(i);
+            }
+            for (int i = 0; i < count; i++) {
+                int m = ordered[i];
+                board.makeMove(m);
+                boolean win = defenderLoses(n, ply + 1);
+                board.unmakeMove();
+                if (win) {
+                    if (ply == 0) move = m;
+                    return true;
+                }
+                if (stopped) return false;
+            }
+            if (!stopped && (keys[slot] != hash || noMate[slot] < n)) {
+                keys[slot] = hash;
+                noMate[slot] = (byte) n;
+            }
+            return false;
+        }
+
+        // True if every reply of the side to move, now n moves from the deadline, loses
+        private boolean defenderLoses(int n, int ply) {
+            nodes++;
+            MoveList replies = lists[ply];
+            replies.clear();
+            Color defender = board.getSideToMove();
+            board.generateLegalMoves(defender, replies);
+            if (replies.isEmpty()) return board.isInCheck(defender);   // mate, not stalemate
+            if (n == 1) return false;
+            // Captures first: they are the likeliest refutations
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < replies.size(); i++) {
+                    int r = replies.get(i);
+                    if (Move.isCapture(r) != (pass == 0)) continue;
+                    board.makeMove(r);
+                    boolean lost = mates(n - 1, ply + 1);
+                    board.unmakeMove();
+                    if (!lost) return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // solve <in.epd> <out> [threads <n>] [mate <n>] [depth <n>] [time <ms>]
+    public static void run(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors(), mate = 0, depth = DEFAULT_DEPTH;
+        long time = 0;
+        Path input, output;
+        try {
+            input = Paths.get(args[1]);
+            output = Paths.get(args[2]);
+            for (int i = 3; i < args.length; i++) {
+                if (args[i].equals("threads")) threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("mate")) mate = Integer.parseInt(args[++i]);
+                else if (args[i].equals("depth")) depth = Integer.parseInt(args[++i]);
+                else if (args[i].equals("time")) time = Long.parseLong(args[++i]);
+                else throw new IllegalArgumentException(args[i]);
+            }
+            if (threads < 1 || mate < 0 || mate > MAX_MATE || depth < 1 || time < 0) throw new IllegalArgumentException();
+        } catch (RuntimeException e) {
+            System.out.println("Usage: java ChessMain solve <in.epd> <out.txt> [threads <n>] [mate <n>] [depth <n>] [time <ms>]");
+            return;
+        }
+        Solver solver = new Solver(threads, mate, depth, time);
+        long start = System.nanoTime();
+        try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            solver.solve(input, out, System.out);
+        } catch (IOException e) {
+            System.out.println("Cannot solve " + input + ": " + e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            solver.shutdown();
+        }
+        solver.printSummary(System.out, Math.max(System.nanoTime() - start, 1) / 1e9);
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.PrintStream;
+import jdk.jfr.*;
+
+// Opt-in instrumentation of the rules engine hot paths: call counts, latency histograms and, for
+// move generation, moves per call. Off unless the JVM is started with -Dchess.stats=true. ENABLED
+// is a constant, so when it is false the JIT folds every probe away and instrumented methods
+// compile as if the probes were not there (compare 'bench' with and without the flag).
+//
+// When enabled, the numbers are also published to Java Flight Recorder: a periodic
+// chess.RulesStatistics event per operation, and a chess.MakeMove event for every move attempted
+// through ChessGame. Record with -XX:StartFlightRecording or jcmd <pid> JFR.start.
+final class Stats {
+    public static final boolean ENABLED = Boolean.getBoolean("chess.stats");
+
+    public static final int GET_ALL_LEGAL_MOVES = 0, IS_IN_CHECK = 1, IS_VALID_MOVE = 2, MAKE_MOVE = 3;
+    private static final String[] NAMES = {
+        "Board.getAllLegalMoves", "Board.isInCheck", "Piece.isValidMove", "ChessGame.makeMove",
+    };
+
+    private static final LatencyHistogram[] LATENCY = new LatencyHistogram[NAMES.length];
+    private static final LatencyHistogram[] MOVES = new LatencyHistogram[NAMES.length];   // moves per call
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            LATENCY[i] = new LatencyHistogram();
+            MOVES[i] = new LatencyHistogram();
+        }
+        if (ENABLED) FlightRecorder.addPeriodicEvent(RulesStatisticsEvent.class, Stats::emitStatistics);
+    }
+
+    private Stats() {}
+
+    // Timestamp to pass to end(); 0 when disabled
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void end(int operation, long start) {
+        if (ENABLED) LATENCY[operation].record(System.nanoTime() - start);
+    }
+
+    // For operations that produce moves
+    public static void end(int operation, long start, int moves) {
+        if (ENABLED) {
+            LATENCY[operation].record(System.nanoTime() - start);
+            MOVES[operation].record(moves);
+        }
+    }
+
+    // One ChessGame.makeMove call, timed by JFR itself; created only when enabled
+    @Name("chess.MakeMove")
+    @Label("Make Move")
+    @Category("Chess")
+    @Description("A move attempted through ChessGame.makeMove")
+    static final class MakeMoveEvent extends Event {
+        @Label("From") String from;
+        @Label("To") String to;
+        @Label("Accepted") boolean accepted;
+    }
+
+    @Name("chess.RulesStatistics")
+    @Label("Rules Engine Statistics")
+    @Category("Chess")
+    @Description("Totals since start or the last reset, for one instrumented operation")
+    @Period("1 s")
+    static final class RulesStatisticsEvent extends Event {
+        @Label("Operation") String operation;
+        @Label("Calls") long calls;
+        @Label("Mean") @Timespan(Timespan.NANOSECONDS) long mean;
+        @Label("99th Percentile") @Timespan(Timespan.NANOSECONDS) long p99;
+        @Label("Maximum") @Timespan(Timespan.NANOSECONDS) long max;
+        @Label("Moves Per Call") double movesPerCall;
+    }
+
+    private static void emitStatistics() {
+        for (int i = 0; i < NAMES.length; i++) {
+            RulesStatisticsEvent e = new RulesStatisticsEvent();
+            e.operation = NAMES[i];
+            e.calls = LATENCY[i].getCount();
+            e.mean = (long) LATENCY[i].getMean();
+            e.p99 = LATENCY[i].getPercentile(99);
+            e.max = LATENCY[i].getPercentile(100);
+            e.movesPerCall = MOVES[i].getMean();
+            e.commit();
+        }
+    }
+
+    public static void reset() {
+        for (int i = 0; i < NAMES.length; i++) {
+            LATENCY[i].reset();
+            MOVES[i].reset();
+        }
+    }
+
+    // The table shown by the 'stats' command
+    public static void print(PrintStream out) {
+        if (!ENABLED) {
+            out.println("Statistics are off; start with java -Dchess.stats=true ChessMain ...");
+            return;
+        }
+        out.printf("%-24s %12s %10s %10s %10s %10s %12s%n", "Operation", "Calls", "Mean ns", "p50 ns", "p99 ns", "Max ns", "Moves/call");
+        for (int i = 0; i < NAMES.length; i++) {
+            LatencyHistogram h = LATENCY[i];
+            out.printf("%-24s %12d %10.0f %10d %10d %10d %12s%n", NAMES[i], h.getCount(), h.getMean(),
+                h.getPercentile(50), h.getPercentile(99), h.getPercentile(100),
+                MOVES[i].getCount() == 0 ? "-" : String.format("%.1f", MOVES[i].getMean()));
+        }
+    }
+}
@@ -0,0 +1,643 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Endgame tablebases for every ending with up to four pieces, kings included. Each ending is one
+// file holding a byte per position: the win/draw/loss and distance to mate in plies for the side
+// to move. Files are generated here by retrograde analysis and memory-mapped for probing; a probe
+// computes the position's index and reads one byte, without locks or allocation.
+//
+// Positions are indexed by side to move, white king, black king and the other pieces, with the
+// white king moved by board symmetry into a1-d1-d4 (pawnless endings) or files a-d (endings with
+// pawns). Only one color orientation of each ending is stored; the other is probed with colors
+// swapped. Castling and en passant are not represented, so positions with either are not probed.
+final class Tablebases {
+    public static final int MAX_PIECES = 4;
+
+    // Value byte: 0 draw, 1..127 side to move mates in that many plies,
+    // 128..254 side to move is mated in (value - 128) plies, 255 unused index
+    public static final int DRAW = 0, LOSS = 128, UNUSED = 255;
+    public static final int NOT_FOUND = -1;
+
+    private static final String LETTERS = "PNBRQK";
+    private static final int WHITE = 0, BLACK = 1;
+    private static final int[][] SYM = new int[8][64];        // bit 0 flips files, bit 1 ranks, bit 2 transposes
+    private static final int[][] REGION = new int[2][64];     // [pawns ? 1 : 0][sq] -> white king slot, or -1
+    private static final int[][] REGION_SQUARE = new int[2][];
+    private static final int[][][] CANDIDATES = new int[2][64][];   // symmetries taking a king square into the region
+
+    static {
+        for (int t = 0; t < 8; t++) {
+            for (int sq = 0; sq < 64; sq++) {
+                int r = sq >> 3, c = sq & 7;
+                if ((t & 4) != 0) { int x = r; r = c; c = x; }
+                if ((t & 1) != 0) c = 7 - c;
+                if ((t & 2) != 0) r = 7 - r;
+                SYM[t][sq] = r * 8 + c;
+            }
+        }
+        for (int kind = 0; kind < 2; kind++) {
+            List<Integer> squares = new ArrayList<>();
+            for (int sq = 0; sq < 64; sq++) {
+                int file = (sq & 7) + 1, rank = 8 - (sq >> 3);
+                boolean inside = kind == 1 ? file <= 4 : file <= 4 && rank <= file;
+                REGION[kind][sq] = inside ? squares.size() : -1;
+                if (inside) squares.add(sq);
+            }
+            REGION_SQUARE[kind] = squares.stream().mapToInt(Integer::intValue).toArray();
+            for (int sq = 0; sq < 64; sq++) {
+                List<Integer> ts = new ArrayList<>();
+                for (int t = 0; t < 8; t++)
+                    if ((kind == 0 || t <= 1) && REGION[kind][SYM[t][sq]] >= 0) ts.add(t);
+                CANDIDATES[kind][sq] = ts.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    // One ending in its stored color orientation. Besides the kings it has a piece in slot A and,
+    // with four pieces, one in slot B: white pieces first, stronger first.
+    static final class Table {
+        final String name;
+        final int pieces, colorA, typeA, colorB, typeB;   // typeB -1 with three pieces
+        final int kind;                                    // 1 if there are pawns
+        final boolean twins;                               // slots A and B hold identical pieces
+        final int size;
+        final int pawns;
+        ByteBuffer data;
+
+        Table(int colorA, int typeA, int colorB, int typeB) {
+            this.colorA = colorA; this.typeA = typeA; this.colorB = colorB; this.typeB = typeB;
+            this.pieces = typeB < 0 ? 3 : 4;
+            this.pawns = (typeA == Piece.PAWN ? 1 : 0) + (typeB == Piece.PAWN ? 1 : 0);
+            this.kind = pawns > 0 ? 1 : 0;
+            this.twins = typeB >= 0 && colorA == colorB && typeA == typeB;
+            this.size = 2 * REGION_SQUARE[kind].length * 64 * (pieces == 4 ? 64 * 64 : 64);
+            StringBuilder w = new StringBuilder("K"), b = new StringBuilder("K");
+            (colorA == WHITE ? w : b).append(LETTERS.charAt(typeA));
+            if (typeB >= 0) (colorB == WHITE ? w : b).append(LETTERS.charAt(typeB));
+            this.name = w + "v" + b;
+        }
+
+        // Canonical index of a placement in this table's orientation, or -1 if the white king square is off the board
+        int index(int stm, int wk, int bk, int a, int b) {
+            int best = Integer.MAX_VALUE;
+            for (int t : CANDIDATES[kind][wk]) {
+                int[] s = SYM[t];
+                int sa = s[a], sb = b < 0 ? 0 : s[b];
+                if (twins && sa > sb) { int x = sa; sa = sb; sb = x; }
+                int idx = ((stm * REGION_SQUARE[kind].length + REGION[kind][s[wk]]) * 64 + s[bk]) * 64 + sa;
+                if (pieces == 4) idx = idx * 64 + sb;
+                if (idx < best) best = idx;
+            }
+            return best;
+        }
+
+        int get(int index) { return data.get(index) & 0xFF; }
+    }
+
+    private final Table[] byKey = new Table[59049];     // material key -> table, in either orientation
+    private final boolean[] flippedKey = new boolean[59049];
+    private final List<Table> tables = new ArrayList<>();
+
+    // Opens every tablebase file in the directory; missing endings are simply not probed
+    public Tablebases(Path dir) throws IOException {
+        for (Table t : allTables()) {
+            Path file = dir.resolve(t.name + ".ctb");
+            if (Files.exists(file)) {
+                t.data = map(file, t);
+                register(t);
+            }
+        }
+    }
+
+    public int getTableCount() { return tables.size(); }
+
+    // Every ending with three or four pieces, in an order where the endings a capture or promotion
+    // can lead to come first
+    static List<Table> allTables() {
+        List<Table> list = new ArrayList<>();
+        for (int a = Piece.QUEEN; a >= Piece.PAWN; a--) list.add(new Table(WHITE, a, -1, -1));
+        for (int a = Piece.QUEEN; a >= Piece.PAWN; a--) {
+            for (int b = a; b >= Piece.PAWN; b--) {
+                list.add(new Table(WHITE, a, WHITE, b));
+                list.add(new Table(WHITE, a, BLACK, b));
+            }
+        }
+        list.sort(Comparator.comparingInt((Table t) -> t.pieces).thenComparingInt(t -> t.pawns));
+        return list;
+    }
+
+    private static int materialKey(int colorA, int typeA, int colorB, int typeB) {
+        int key = 0;
+        if (typeA >= 0) key += POW3[colorA * 5 + typeA];
+        if (typeB >= 0) key += POW3[colorB * 5 + typeB];
+        return key;
+    }
+
+    private static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561, 19683};
+
+    private void register(Table t) {
+        tables.add(t);
+        byKey[materialKey(t.colorA, t.typeA, t.colorB, t.typeB)] = t;
+        int flipped = materialKey(t.colorA ^ 1, t.typeA, t.typeB < 0 ? 0 : t.colorB ^ 1, t.typeB);
+        if (byKey[flipped] == null) {
+            byKey[flipped] = t;
+            flippedKey[flipped] = true;
+        }
+    }
+
+    // ---- probing ----
+
+    // Value byte for the board's position, or NOT_FOUND if it is not covered
+    public int probe(Board board) {
+        if (Long.bitCount(board.getOccupied()) > MAX_PIECES || board.getCastlingRights() != 0
+                || board.getEnPassantSquare() >= 0) return NOT_FOUND;
+        int c1 = -1, t1 = -1, s1 = -1, c2 = -1, t2 = -1, s2 = -1;
+        long others = board.getOccupied() & ~(board.getPieces(Color.WHITE, Piece.KING) | board.getPieces(Color.BLACK, Piece.KING));
+        for (; others != 0; others &= others - 1) {
+            int sq = Long.numberOfTrailingZeros(others);
+            Piece p = board.getPiece(sq);
+            if (s1 < 0) { c1 = p.getColor().ordinal(); t1 = p.getType(); s1 = sq; }
+            else { c2 = p.getColor().ordinal(); t2 = p.getType(); s2 = sq; }
+        }
+        int v = value(board.getSideToMove().ordinal(), board.getKingSquare(Color.WHITE), board.getKingSquare(Color.BLACK),
+            c1, t1, s1, c2, t2, s2);
+        return v == UNUSED ? NOT_FOUND : v;   // the side not to move is in check
+    }
+
+    // Value of a placement given as the kings and up to two more pieces (square -1 when absent)
+    int value(int stm, int wk, int bk, int c1, int t1, int s1, int c2, int t2, int s2) {
+        if (s1 < 0) return DRAW;   // bare kings
+        Table t = byKey[materialKey(c1, t1, s2 < 0 ? -1 : c2, s2 < 0 ? -1 : t2)];
+        if (t == null) return NOT_FOUND;
+        if (flippedKey[materialKey(c1, t1, s2 < 0 ? -1 : c2, s2 < 0 ? -1 : t2)]) {
+            // Swap colors and mirror the ranks, so white becomes black moving the other way
+            int k = wk; wk = bk ^ 56; bk = k ^ 56;
+            c1 ^= 1; s1 ^= 56;
+            if (s2 >= 0) { c2 ^= 1; s2 ^= 56; }
+            stm ^= 1;
+        }
+        if (s2 >= 0 && (c1 != t.colorA || t1 != t.typeA)) {
+            int x = s1; s1 = s2; s2 = x;
+        }
+        return t.get(t.index(stm, wk, bk, s1, s2));
+    }
+
+    public static boolean isWin(int value) { return value >= 1 && value < LOSS; }
+    public static boolean isLoss(int value) { return value >= LOSS && value < UNUSED; }
+    public static int distance(int value) { return value >= LOSS ? value - LOSS : value; }
+
+    // Search score for a probed value at the given ply, matching Search's mate scores. A distance
+    // probed deep in the tree can take it past MATE - MAX_PLY, but never past Search.MATE_BOUND.
+    public static int score(int value, int ply) {
+        if (isWin(value)) return Search.MATE - ply - distance(value);
+        if (isLoss(value)) return -Search.MATE + ply + distance(value);
+        return 0;
+    }
+
+    // The move keeping the best tablebase result: the fastest mate when winning, the slowest when
+    // losing. Returns 0 if the position is not covered.
+    public int bestMove(Board board, MoveList moves) {
+        if (probe(board) == NOT_FOUND) return 0;
+        moves.clear();
+        board.generateLegalMoves(board.getSideToMove(), moves);
+        int best = 0, bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            int v = resolve(board);
+            board.unmakeMove();
+            if (v == NOT_FOUND) continue;
+            int rank = rank(v);
+            if (rank > bestRank) { bestRank = rank; best = moves.get(i); }
+        }
+        return best;
+    }
+
+    // How good a move is for the side playing it, given the value of the position it leads to:
+    // opponent mated soonest, then draws, then being mated latest
+    private static int rank(int v) {
+        return isLoss(v) ? 1000 - distance(v) : isWin(v) ? -1000 + distance(v) : 0;
+    }
+
+    // Value of the board's position like probe, but a position left out only for its en passant
+    // square (after a double push) is valued by a one-ply search over its replies instead
+    private int resolve(Board board) {
+        int v = probe(board);
+        if (v != NOT_FOUND || board.getEnPassantSquare() < 0 || board.getCastlingRights() != 0
+                || Long.bitCount(board.getOccupied()) > MAX_PIECES) return v;
+        MoveList replies = new MoveList();
+        board.generateLegalMoves(board.getSideToMove(), replies);
+        if (replies.isEmpty()) return board.isInCheck(board.getSideToMove()) ? LOSS : DRAW;
+        int best = NOT_FOUND, bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < replies.size(); i++) {
+            board.makeMove(replies.get(i));
+            int w = resolve(board);   // a reply can be a double push in turn
+            board.unmakeMove();
+            if (w == NOT_FOUND) return NOT_FOUND;
+            int rank = rank(w);
+            if (rank > bestRank) { bestRank = rank; best = w; }
+        }
+        // One ply further from mate, seen from this side
+        if (isLoss(best)) return Math.min(distance(best) + 1, LOSS - 1);
+        if (isWin(best)) return Math.min(LOSS + distance(best) + 1, UNUSED - 1);
+        return DRAW;
+    }
+
+    // Text verdict for the side to move, or null if the position is not covered
+    public String describe(Board board) {
+        int v = probe(board);
+        if (v == NOT_FOUND) return null;
+        Color us = board.getSideToMove();
+        if (isWin(v)) return us + " wins, mate in " + (distance(v) + 1) / 2;
+        if (isLoss(v)) return distance(v) == 0 ? us + " is checkmated" : us.opposite() + " wins, mate in " + distance(v) / 2;
+        return "draw";
+    }
+
+    // ---- files ----
+
+    private static final int MAGIC = 0x43544231;   // "CTB1"
+    private static final int HEADER = 16;
+
+    private static ByteBuffer map(Path file, Table t) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            header.flip();
+            if (header.remaining() < HEADER || header.getInt() != MAGIC || header.getInt() != t.pieces
+                    || header.getLong() != t.size || ch.size() != HEADER + (long) t.size)
+                throw new IOException(file + " is not a " + t.name + " tablebase");
+            return ch.map(FileChannel.MapMode.READ_ONLY, HEADER, t.size);
+        }
+    }
+
+    private static void write(Path file, Table t, byte[] values) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(t.pieces).putLong(t.size);
+            header.flip();
+            while (header.hasRemaining()) ch.write(header);
+            ByteBuffer body = ByteBuffer.wrap(values);
+            while (body.hasRemaining()) ch.write(body);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- generation ----
+
+    // Generates the named endings (all if names is empty) that have no file yet, with their dependencies
+    public static Tablebases generate(Path dir, Set<String> names, int threads, PrintStream out) throws IOException {
+        Files.createDirectories(dir);
+        Tablebases tb = new Tablebases(dir);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Table t : allTables()) {
+                if (tb.find(t.name) != null) continue;
+                if (!names.isEmpty() && !names.contains(t.name) && !neededBy(t, names)) continue;
+                long start = System.nanoTime();
+                byte[] values = new Generator(tb, t, pool).run();
+                write(dir.resolve(t.name + ".ctb"), t, values);
+                t.data = map(dir.resolve(t.name + ".ctb"), t);
+                long[] counts = new long[3];
+                int longest = 0;
+                for (byte b : values) {
+                    int v = b & 0xFF;
+                    if (v == UNUSED) continue;
+                    counts[isWin(v) ? 0 : isLoss(v) ? 2 : 1]++;
+                    longest = Math.max(longest, distance(v));
+                }
+                out.printf("%-8s %10d positions  %5.1f s  win %d, draw %d, loss %d, longest mate %d plies%n", t.name, t.size,
+                    (System.nanoTime() - start) / 1e9, counts[0], counts[1], counts[2], longest);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return tb;
+    }
+
+    private Table find(String name) {
+        for (Table t : tables) if (t.name.equals(name)) return t;
+        return null;
+    }
+
+    // True if the ending may be reached by a capture or promotion from one of the named endings:
+    // it has fewer pieces, or as many with fewer pawns
+    private static boolean neededBy(Table t, Set<String> names) {
+        for (Table u : allTables()) {
+            if (!names.contains(u.name) || u == t) continue;
+            if (t.pieces < u.pieces || (t.pieces == u.pieces && t.pawns < u.pawns)) return true;
+        }
+        return false;
+    }
+
+    // Retrograde analysis of one ending. Positions are first scored from their terminal state and
+    // from captures and promotions into endings already solved. Then, for n = 1, 2, ..., every
+    // position with a move to a position lost in n - 1 plies is won in n, and every position whose
+    // moves all lead to won positions, the longest in n - 1, is lost in n. Predecessors are found by
+    // un-moving pieces of the side that just moved.
+    private static final class Generator {
+        private final Tablebases tb;
+        private final Table t;
+        private final ForkJoinPool pool;
+        private final byte[] values;
+        private final byte[] exitWin;    // plies to mate through a capture or promotion, 0 if none
+        private final byte[] exitLoss;   // longest mated line through captures or promotions, 255 if one draws
+        private volatile boolean changed;
+
+        Generator(Tablebases tb, Table t, ForkJoinPool pool) {
+            this.tb = tb;
+            this.t = t;
+            this.pool = pool;
+            this.values = new byte[t.size];
+            this.exitWin = new byte[t.size];
+            this.exitLoss = new byte[t.size];
+        }
+
+        byte[] run() {
+            t.data = ByteBuffer.wrap(values);   // lookups during generation read the array being filled; mapped once written
+            tb.register(t);
+            parallel(this::initialize);
+            int maxExit = 0;
+            for (int i = 0; i < t.size; i++) {
+                if ((values[i] & 0xFF) == UNUSED) continue;
+                maxExit = Math.max(maxExit, exitWin[i] & 0xFF);
+                if ((exitLoss[i] & 0xFF) != UNUSED) maxExit = Math.max(maxExit, exitLoss[i] & 0xFF);
+            }
+            for (int n = 1; n < LOSS - 1; n++) {
+                int level = n;
+                changed = false;
+                parallel(i -> markWins(i, level));
+                parallel(i -> markLosses(i, level));
+                if (!changed && n > maxExit) break;
+            }
+            return values;
+        }
+
+        private interface PositionTask { void run(int index); }
+
+        private void parallel(PositionTask task) {
+            int chunk = 1 << 14;
+            pool.submit(() -> IntStream.range(0, (t.size + chunk - 1) / chunk).parallel().forEach(c -> {
+                int end = Math.min(t.size, (c + 1) * chunk);
+                for (int i = c * chunk; i < end; i++) task.run(i);
+            })).join();
+        }
+
+        // Decodes an index into slot squares {white king, black king, A, B}; returns the side to move
+        private int decode(int index, int[] sq) {
+            int i = index;
+            sq[3] = -1;
+            if (t.pieces == 4) { sq[3] = i & 63; i >>>= 6; }
+            sq[2] = i & 63; i >>>= 6;
+            sq[1] = i & 63; i >>>= 6;
+            int regions = REGION_SQUARE[t.kind].length;
+            sq[0] = REGION_SQUARE[t.kind][i % regions];
+            return i / regions;
+        }
+
+        private int color(int slot) { return slot == 0 ? WHITE : slot == 1 ? BLACK : slot == 2 ? t.colorA : t.colorB; }
+        private int type(int slot, int promoted) { return slot < 2 ? Piece.KING : promoted >= 0 ? promoted : slot == 2 ? t.typeA : t.typeB; }
+
+        private void initialize(int index) {
+            int[] sq = new int[4];
+            int stm = decode(index, sq);
+            if (!valid(index, stm, sq)) {
+                values[index] = (byte) UNUSED;
+                return;
+            }
+            int[] result = {0, 0, 0};   // legal moves, exit win, exit loss
+            forEachMove(stm, sq, (slot, to, captured, promotion, child) -> {
+                result[0]++;
+                if (captured < 0 && promotion < 0) return true;
+                int v = child;
+                if (isLoss(v)) result[1] = result[1] == 0 ? distance(v) + 1 : Math.min(result[1], distance(v) + 1);
+                else if (isWin(v)) { if (result[2] != UNUSED) result[2] = Math.max(result[2], distance(v) + 1); }
+                else result[2] = UNUSED;
+                return true;
+            }, true);
+            if (result[0] == 0) {
+                values[index] = (byte) (inCheck(stm, sq) ? LOSS : DRAW);   // checkmate or stalemate
+                return;
+            }
+            exitWin[index] = (byte) result[1];
+            exitLoss[index] = (byte) result[2];
+        }
+
+        private boolean valid(int index, int stm, int[] sq) {
+            for (int i = 0; i < 4; i++) {
+                if (sq[i] < 0) continue;
+                for (int j = i + 1; j < 4; j++) if (sq[i] == sq[j]) return false;
+                if (type(i, -1) == Piece.PAWN && ((sq[i] >> 3) == 0 || (sq[i] >> 3) == 7)) return false;
+            }
+            if ((Bitboards.KING_ATTACKS[sq[0]] & 1L << sq[1]) != 0) return false;
+            if (t.index(stm, sq[0], sq[1], sq[2], sq[3]) != index) return false;   // another index holds this position
+            return !inCheck(stm ^ 1, sq);
+        }
+
+        private void markWins(int index, int level) {
+            int v = values[index] & 0xFF;
+            if (v == DRAW && (exitWin[index] & 0xFF) == level) {
+                values[index] = (byte) level;
+                changed = true;
+            }
+            if (v != LOSS + level - 1) return;
+            int[] sq = new int[4];
+            int stm = decode(index, sq);
+            forEachPredecessor(stm, sq, q -> {
+                if ((values[q] & 0xFF) == DRAW) {
+                    values[q] = (byte) level;
+                    changed = true;
+                }
+            });
+        }
+
+        private void markLosses(int index, int level) {
+            int v = values[index] & 0xFF;
+            if (v == DRAW && (exitLoss[index] & 0xFF) == level) tryLoss(index, level);
+            if (v != level - 1 || level == 1) return;
+            int[] sq = new int[4];
+            int stm = decode(index, sq);
+            forEachPredecessor(stm, sq, q -> {
+                if ((values[q] & 0xFF) == DRAW) tryLoss(q, level);
+            });
+        }
+
+        // Marks the position lost in level plies if every move leads to a win for the opponent, the longest in level - 1
+        private void tryLoss(int index, int level) {
+            int[] sq = new int[4];
+            int stm = decode(index, sq);
+            int[] longest = {0};
+            boolean allWon = forEachMove(stm, sq, (slot, to, captured, promotion, child) -> {
+                if (!isWin(child)) return false;
+                longest[0] = Math.max(longest[0], distance(child) + 1);
+                return true;
+            }, false);
+            if (allWon && longest[0] == level) {
+                values[index] = (byte) (LOSS + level);
+                changed = true;
+            }
+        }
+
+        private interface MoveVisitor { boolean visit(int slot, int to, int captured, int promotion, int childValue); }
+        private interface IndexVisitor { void visit(int index); }
+
+        // Visits every legal move with the value of the position it leads to, until the visitor returns
+        // false. With exitsOnly the value is only looked up for captures and promotions.
+        private boolean forEachMove(int stm, int[] sq, MoveVisitor visitor, boolean exitsOnly) {
+            long occ = 0, own = 0;
+            for (int i = 0; i < 4; i++) {
+                if (sq[i] < 0) continue;
+                occ |= 1L << sq[i];
+                if (color(i) == stm) own |= 1L << sq[i];
+            }
+            int[] child = new int[4];
+            for (int slot = 0; slot < 4; slot++) {
+                if (sq[slot] < 0 || color(slot) != stm) continue;
+                int from = sq[slot], type = type(slot, -1);
+                long targets;
+                if (type == Piece.PAWN) {
+                    int step = stm == WHITE ? -8 : 8;
+                    targets = Bitboards.PAWN_ATTACKS[stm][from] & occ & ~own;
+                    int push = from + step;
+                    if ((occ & 1L << push) == 0) {
+                        targets |= 1L << push;
+                        int start = stm == WHITE ? 6 : 1;
+                        if ((from >> 3) == start && (occ & 1L << (push + step)) == 0) targets |= 1L << (push + step);
+                    }
+                } else {
+                    targets = attacks(type, from, occ) & ~own;
+                }
+                for (; targets != 0; targets &= targets - 1) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    int captured = -1;
+                    for (int j = 0; j < 4; j++) if (sq[j] == to) captured = j;
+                    System.arraycopy(sq, 0, child, 0, 4);
+                    child[slot] = to;
+                    if (captured >= 0) child[captured] = -1;
+                    if (attacked(child[stm], stm ^ 1, child)) continue;   // king slots are numbered by color
+                    boolean promotes = type == Piece.PAWN && ((to >> 3) == 0 || (to >> 3) == 7);
+                    for (int promotion = promotes ? Piece.QUEEN : -1; promotion >= (promotes ? Piece.KNIGHT : -1); promotion--) {
+                        int value = exitsOnly && captured < 0 && promotion < 0 ? 0
+                            : childValue(stm ^ 1, child, slot, promotion);
+                        if (!visitor.visit(slot, to, captured, promotion, value)) return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private int childValue(int stm, int[] sq, int promotedSlot, int promotion) {
+            int c1 = -1, t1 = -1, s1 = -1, c2 = -1, t2 = -1, s2 = -1;
+            for (int slot = 2; slot < 4; slot++) {
+                if (sq[slot] < 0) continue;
+                int type = type(slot, slot == promotedSlot ? promotion : -1);
+                if (s1 < 0) { c1 = color(slot); t1 = type; s1 = sq[slot]; }
+                else { c2 = color(slot); t2 = type; s2 = sq[slot]; }
+            }
+            int v = tb.value(stm, sq[0], sq[1], c1, t1, s1, c2, t2, s2);
+            if (v == NOT_FOUND) throw new IllegalStateException("missing tablebase needed by " + t.name);
+            return v;
+        }
+
+        // Calls the visitor with the index of every position, with the other side to move, that has a
+        // non-capturing, non-promoting move to this one
+        private void forEachPredecessor(int stm, int[] sq, IndexVisitor visitor) {
+            int mover = stm ^ 1;
+            long occ = 0;
+            for (int i = 0; i < 4; i++) if (sq[i] >= 0) occ |= 1L << sq[i];
+            for (int slot = 0; slot < 4; slot++) {
+                if (sq[slot] < 0 || color(slot) != mover) continue;
+                int at = sq[slot], type = type(slot, -1);
+                long origins;
+                if (type == Piece.PAWN) {
+                    int back = mover == WHITE ? 8 : -8;
+                    int one = at + back;
+                    origins = 0;
+                    if ((occ & 1L << one) == 0 && (one >> 3) != 0 && (one >> 3) != 7) {
+                        origins |= 1L << one;
+                        int doubleRank = mover == WHITE ? 4 : 3;
+                        if ((at >> 3) == doubleRank && (occ & 1L << (one + back)) == 0) origins |= 1L << (one + back);
+                    }
+                } else {
+                    origins = attacks(type, at, occ) & ~occ;
+                }
+                for (; origins != 0; origins &= origins - 1) {
+                    int from = Long.numberOfTrailingZeros(origins);
+                    int saved = sq[slot];
+                    sq[slot] = from;
+                    int q = t.index(mover, sq[0], sq[1], sq[2], sq[3]);
+                    sq[slot] = saved;
+                    visitor.visit(q);
+                }
+            }
+        }
+
+        private boolean inCheck(int color, int[] sq) {
+            return attacked(sq[color], color ^ 1, sq);
+        }
+
+        // True if a piece of the given color attacks the square
+        private boolean attacked(int target, int by, int[] sq) {
+            long occ = 0;
+            for (int i = 0; i < 4; i++) if (sq[i] >= 0) occ |= 1L << sq[i];
+            for (int slot = 0; slot < 4; slot++) {
+                if (sq[slot] < 0 || color(slot) != by) continue;
+                int type = type(slot, -1);
+                long a = type == Piece.PAWN ? Bitboards.PAWN_ATTACKS[by][sq[slot]] : attacks(type, sq[slot], occ);
+                if ((a & 1L << target) != 0) return true;
+            }
+            return false;
+        }
+
+        private static long attacks(int type, int sq, long occ) {
+            switch (type) {
+                case Piece.KNIGHT: return Bitboards.KNIGHT_ATTACKS[sq];
+                case Piece.BISHOP: return Bitboards.bishopAttacks(sq, occ);
+                case Piece.ROOK: return Bitboards.rookAttacks(sq, occ);
+                case Piece.QUEEN: return Bitboards.queenAttacks(sq, occ);
+                default: return Bitboards.KING_ATTACKS[sq];
+            }
+        }
+    }
+
+    // tb gen <dir> [<ending> ...] [threads <n>]
+    // tb probe <dir> fen <fen>
+    public static void run(String[] args) {
+        try {
+            if (args.length >= 3 && args[1].equals("gen")) {
+                int threads = Runtime.getRuntime().availableProcessors();
+                Set<String> names = new LinkedHashSet<>();
+                for (int i = 3; i < args.length; i++) {
+                    if (args[i].equals("threads")) threads = Integer.parseInt(args[++i]);
+                    else names.add(args[i]);
+                }
+                long start = System.nanoTime();
+                Tablebases tb = generate(Paths.get(args[2]), names, threads, System.out);
+                System.out.printf("%d endings in %s, %.1f s%n", tb.getTableCount(), args[2], (System.nanoTime() - start) / 1e9);
+            } else if (args.length >= 5 && args[1].equals("probe") && args[3].equals("fen")) {
+                Tablebases tb = new Tablebases(Paths.get(args[2]));
+                Board board = new Board(String.join(" ", Arrays.copyOfRange(args, 4, args.length)));
+                String verdict = tb.describe(board);
+                if (verdict == null) {
+                    System.out.println("Not in the tablebases");
+                    return;
+                }
+                int best = tb.bestMove(board, new MoveList());
+                System.out.println(verdict + (best == 0 ? "" : ", best move " + Move.notation(best)));
+            } else {
+                throw new IllegalArgumentException();
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalStateException) System.out.println(e.getMessage());
+            System.out.println("Usage: java ChessMain tb gen <dir> [<ending> ...] [threads <n>]");
+            System.out.println("       java ChessMain tb probe <dir> fen <fen>");
+        }
+    }
+}
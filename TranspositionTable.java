@@ -0,0 +1,108 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size hash table of search results shared by any number of search threads without locks.
+// Every entry is two longs in one flat array: (key ^ data, data). A reader recomputes key ^ data and
+// rejects the entry if it does not match, so an entry torn by a concurrent write looks like a miss.
+// Entries are grouped in buckets of four (one 64-byte cache line); a store replaces the entry
+// for the same position, else the shallowest and oldest one.
+final class TranspositionTable {
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;   // score bound types
+    public static final int DEFAULT_MB = 16;
+    private static final int BUCKET = 4;
+
+    // data layout: move (16) | score (16) | depth (8) | bound (2) | age (6)
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    public TranspositionTable(int megabytes) {
+        // Largest power-of-two bucket count that fits; each bucket takes 4 entries * 16 bytes
+        long buckets = Long.highestOneBit(Math.max(1L, (long) megabytes * 1024 * 1024 / (BUCKET * 16)));
+        buckets = Math.min(buckets, 1L << 27);   // 8 GB, the most an int-indexed long[] can hold
+        table = new long[(int) buckets * BUCKET * 2];
+        bucketMask = (int) buckets - 1;
+    }
+
+    // Called once per search so entries from earlier searches can be recognized and replaced
+    public void newSearch() { age = (age + 1) & 63; }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+        probes.reset(); hits.reset(); stores.reset();
+    }
+
+    // Returns the packed data for the key, or 0 if absent (a stored entry never has zero data)
+    public long probe(long key) {
+        probes.increment();
+        int base = ((int) key & bucketMask) * BUCKET * 2;
+        for (int i = base; i < base + BUCKET * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != 0) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    // Mate scores are stored relative to the node, not the root, so they stay valid at any ply
+    public void store(long key, int move, int score, int depth, int bound, int ply) {
+        if (score >= Search.MATE_BOUND) score += ply;
+        else if (score <= -Search.MATE_BOUND) score -= ply;
+        int currentAge = age;
+        int base = ((int) key & bucketMask) * BUCKET * 2;
+        int replace = base;
+        int worst = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key || data == 0) {
+                // Keep the old best move if the new result has none
+                if (move == 0 && data != 0) move = move(data);
+                replace = i;
+                break;
+            }
+            // Prefer to replace shallow entries and entries left over from earlier searches
+            int value = depth(data) - 8 * ((currentAge - age(data)) & 63);
+            if (value < worst) { worst = value; replace = i; }
+        }
+        long data = (move & 0xFFFFL) | (score & 0xFFFFL) << 16 | (long) (depth & 0xFF) << 32
+            | (long) bound << 40 | (long) currentAge << 42;
+        table[replace] = key ^ data;
+        table[replace + 1] = data;
+        stores.increment();
+    }
+
+    public static int move(long data) { return (int) (data & 0xFFFF); }
+    public static int depth(long data) { return (int) ((data >>> 32) & 0xFF); }
+    public static int bound(long data) { return (int) ((data >>> 40) & 3); }
+    private static int age(long data) { return (int) ((data >>> 42) & 63); }
+
+    public static int score(long data, int ply) {
+        int score = (short) (data >>> 16);
+        if (score >= Search.MATE_BOUND) score -= ply;
+        else if (score <= -Search.MATE_BOUND) score += ply;
+        return score;
+    }
+
+    public long getProbes() { return probes.sum(); }
+    public long getHits() { return hits.sum(); }
+    public long getStores() { return stores.sum(); }
+    public double getHitRate() { long p = probes.sum(); return p == 0 ? 0 : (double) hits.sum() / p; }
+    public int getEntryCount() { return table.length / 2; }
+    public long getSizeBytes() { return (long) table.length * 8; }
+
+    // Fraction of entries written during the current search, sampled from the first buckets
+    public double getFillRate() {
+        int sample = Math.min(table.length, 1000 * BUCKET * 2);
+        int currentAge = age, used = 0;
+        for (int i = 0; i < sample; i += 2) {
+            long data = table[i + 1];
+            if (data != 0 && age(data) == currentAge) used++;
+        }
+        return used / (sample / 2.0);
+    }
+}
@@ -0,0 +1,333 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+// Headless UCI protocol front end. Commands are read on the calling thread while searches run
+// on a separate thread, so 'stop', 'isready' and 'quit' are answered during a search.
+// Search checks its stop flag at every node.
+final class Uci {
+    private static final String NAME = "Command-Line Chess Engine";
+    private static final long DEFAULT_MOVE_MILLIS = 2000;   // for a 'go' without clocks, movetime, depth or infinite
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private Board board = new Board();
+    private int hashMb = TranspositionTable.DEFAULT_MB;
+    private int threads = 1;
+    private ParallelSearch engine;
+    private Book book;
+    private Tablebases tablebases;
+    private Nnue network;
+    private final Random random = new Random();
+    private Thread searchThread;
+    private CountDownLatch untilStop;   // holds back bestmove of a 'go infinite' or 'go ponder' search
+    private long ponderBudget;          // time the pondered move gets once 'ponderhit' arrives, 0 for none
+
+    Uci(InputStream in, OutputStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), 1 << 16);
+        this.out = new PrintStream(new BufferedOutputStream(out, 1 << 16), false, StandardCharsets.US_ASCII);
+    }
+
+    public static void run() {
+        new Uci(System.in, System.out).loop();
+    }
+
+    void loop() {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!handle(line.trim())) break;
+            }
+        } catch (IOException e) {
+            // stdin closed; fall through to shut down
+        }
+        stopSearch();
+        if (engine != null) engine.shutdown();
+        out.flush();
+    }
+
+    // Returns false when the engine should exit
+    private boolean handle(String line) {
+        if (line.isEmpty()) return true;
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "uci":
+                send("id name " + NAME);
+                send("id author charanmannem");
+                send("option name Hash type spin default " + TranspositionTable.DEFAULT_MB + " min 1 max 8192");
+                send("option name Threads type spin default 1 min 1 max 512");
+                send("option name BookFile type string default <empty>");
+                send("option name TablebasePath type string default <empty>");
+                send("option name EvalFile type string default <empty>");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                waitForSearch();
+                setOption(tokens);
+                break;
+            case "ucinewgame":
+                waitForSearch();
+                if (engine != null) engine.getTranspositionTable().clear();
+                board = new Board();
+                break;
+            case "position":
+                waitForSearch();
+                position(tokens);
+                break;
+            case "go":
+                waitForSearch();
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "quit":
+                return false;
+            default:
+                send("info string unknown command " + tokens[0]);
+        }
+        return true;
+    }
+
+    private void setOption(String[] tokens) {
+        // setoption name <id> value <x>
+        int nameAt = indexOf(tokens, "name"), valueAt = indexOf(tokens, "value");
+        if (nameAt < 0 || valueAt < 0 || valueAt + 1 >= tokens.length) return;
+        String name = String.join(" ", Arrays.copyOfRange(tokens, nameAt + 1, valueAt)).toLowerCase();
+        if (name.equals("bookfile")) {
+            setBook(String.join(" ", Arrays.copyOfRange(tokens, valueAt + 1, tokens.length)));
+            return;
+        }
+        if (name.equals("tablebasepath")) {
+            setTablebases(String.join(" ", Arrays.copyOfRange(tokens, valueAt + 1, tokens.length)));
+            return;
+        }
+        if (name.equals("evalfile")) {
+            setNetwork(String.join(" ", Arrays.copyOfRange(tokens, valueAt + 1, tokens.length)));
+            return;
+        }
+        try {
+            int value = Integer.parseInt(tokens[valueAt + 1]);
+            if (name.equals("hash") && value >= 1) hashMb = value;
+            else if (name.equals("threads") && value >= 1) threads = value;
+            else return;
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (engine != null) engine.shutdown();
+        engine = null;   // rebuilt with the new settings on the next 'go'
+    }
+
+    private void setBook(String path) {
+        try {
+            if (book != null) book.close();
+            book = null;
+            if (!path.isEmpty() && !path.equals("<empty>")) book = new Book(java.nio.file.Paths.get(path));
+        } catch (IOException e) {
+            send("info string cannot open book " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void setTablebases(String path) {
+        try {
+            tablebases = null;
+            if (!path.isEmpty() && !path.equals("<empty>")) {
+                tablebases = new Tablebases(java.nio.file.Paths.get(path));
+                send("info string " + tablebases.getTableCount() + " tablebases found");
+            }
+        } catch (IOException e) {
+            send("info string cannot open tablebases in " + path + ": " + e.getMessage());
+        }
+        if (engine != null) engine.setTablebases(tablebases);
+    }
+
+    // Without a network the piece-square evaluation is used
+    private void setNetwork(String path) {
+        try {
+            network = null;
+            if (!path.isEmpty() && !path.equals("<empty>")) network = Nnue.load(java.nio.file.Paths.get(path));
+        } catch (IOException e) {
+            send("info string cannot load network " + path + ": " + e.getMessage());
+        }
+        if (engine != null) engine.setNetwork(network);
+    }
+
+    private void position(String[] tokens) {
+        int movesAt = indexOf(tokens, "moves");
+        int end = movesAt < 0 ? tokens.length : movesAt;
+        try {
+            Board loaded = tokens.length > 1 && tokens[1].equals("fen")
+                ? new Board(String.join(" ", Arrays.copyOfRange(tokens, 2, end))) : new Board();
+            // Impossible positions are refused before the search can overrun its move lists
+            String problem = loaded.validatePosition();
+            if (problem != null) throw new IllegalArgumentException("Invalid position: " + problem);
+            board = loaded;
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+            return;
+        }
+        if (movesAt < 0) return;
+        MoveList legal = new MoveList();
+        for (int i = movesAt + 1; i < tokens.length; i++) {
+            int move = parseMove(tokens[i], legal);
+            if (move == 0) {
+                send("info string illegal move " + tokens[i]);
+                return;
+            }
+            board.makeMove(move);
+        }
+    }
+
+    // Coordinate move such as e2e4 or e7e8q; the promotion piece always comes from the string
+    private int parseMove(String text, MoveList legal) {
+        if (text.length() < 4 || text.length() > 5) return 0;
+        Position from = new Position(text.substring(0, 2)), to = new Position(text.substring(2, 4));
+        if (!from.isValid() || !to.isValid()) return 0;
+        int promotion = text.length() == 5 ? "nbrq".indexOf(text.charAt(4)) + Piece.KNIGHT : Piece.QUEEN;
+        if (promotion < Piece.KNIGHT) return 0;
+        legal.clear();
+        board.generateLegalMoves(board.getSideToMove(), legal);
+        for (int i = 0; i < legal.size(); i++) {
+            int m = legal.get(i);
+            if (Move.from(m) == from.getSquare() && Move.to(m) == to.getSquare()
+                    && (!Move.isPromotion(m) || Move.promotionType(m) == promotion))
+                return m;
+        }
+        return 0;
+    }
+
+    private void go(String[] tokens) {
+        int depth = -1;
+        long movetime = 0, wtime = -1, btime = -1, winc = 0, binc = 0;
+        int movesToGo = 0;
+        // Until 'stop' (or 'ponderhit'), the search may end but its bestmove must not be sent
+        boolean infinite = indexOf(tokens, "infinite") >= 0, ponder = indexOf(tokens, "ponder") >= 0;
+        for (int i = 1; i + 1 < tokens.length; i++) {
+            try {
+                switch (tokens[i]) {
+                    case "depth": depth = Integer.parseInt(tokens[++i]); break;
+                    case "movetime": movetime = Long.parseLong(tokens[++i]); break;
+                    case "wtime": wtime = Long.parseLong(tokens[++i]); break;
+                    case "btime": btime = Long.parseLong(tokens[++i]); break;
+                    case "winc": winc = Long.parseLong(tokens[++i]); break;
+                    case "binc": binc = Long.parseLong(tokens[++i]); break;
+                    case "movestogo": movesToGo = Integer.parseInt(tokens[++i]); break;
+                    default: break;
+                }
+            } catch (NumberFormatException e) {
+                send("info string bad value for " + tokens[i - 1]);
+                return;
+            }
+        }
+        boolean white = board.getSideToMove() == Color.WHITE;
+        // A GUI that sends only one clock still gets a timed search: the other side's clock stands in
+        long time = white ? (wtime >= 0 ? wtime : btime) : (btime >= 0 ? btime : wtime);
+        long inc = white ? winc : binc;
+        // Known openings are answered from the book without searching
+        int bookMove = book == null || infinite || ponder ? 0 : book.pick(board, random);
+        if (bookMove != 0) {
+            send("info string book move");
+            send("bestmove " + Move.notation(bookMove));
+            return;
+        }
+        long budget = movetime;
+        if (budget == 0 && time >= 0 && !infinite) {
+            // Spread the remaining time over the expected number of moves, keeping a safety margin
+            long share = time / (movesToGo > 0 ? movesToGo + 1 : 30) + inc * 3 / 4;
+            budget = Math.max(1, Math.min(share, time - 50));
+        } else if (budget == 0 && depth < 0 && !infinite) {
+            budget = DEFAULT_MOVE_MILLIS;   // nothing else bounds the search
+        }
+        if (engine == null) {
+            engine = new ParallelSearch(new TranspositionTable(hashMb), threads);
+            engine.setTablebases(tablebases);
+            engine.setNetwork(network);
+        }
+        ParallelSearch search = engine;
+        int maxDepth = depth < 0 ? Search.MAX_PLY : Math.max(1, depth);
+        // A pondering search runs unlimited; its budget starts counting at 'ponderhit'
+        long limit = ponder ? 0 : budget;
+        ponderBudget = ponder ? budget : 0;
+        CountDownLatch hold = infinite || ponder ? new CountDownLatch(1) : null;
+        // Set up here rather than on the search thread, so a 'stop' read right after 'go' reaches it
+        search.prepare(board);
+        untilStop = hold;
+        searchThread = new Thread(() -> {
+            int best = search.search(maxDepth, limit, this::info);
+            if (hold != null) {
+                try {
+                    hold.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            send(best == 0 ? "bestmove 0000" : "bestmove " + Move.notation(best));
+        }, "uci-search");
+        searchThread.start();
+    }
+
+    private void info(int depth, int score, long nodes, long elapsedMillis, int[] pv, int pvLength) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("info depth ").append(depth).append(" score ");
+        if (score >= Search.MATE_BOUND) sb.append("mate ").append((Search.MATE - score + 1) / 2);
+        else if (score <= -Search.MATE_BOUND) sb.append("mate ").append(-(Search.MATE + score) / 2);
+        else sb.append("cp ").append(score);
+        sb.append(" nodes ").append(nodes).append(" time ").append(elapsedMillis)
+          .append(" nps ").append(nodes * 1000 / Math.max(1, elapsedMillis));
+        if (pvLength > 0) {
+            sb.append(" pv");
+            for (int i = 0; i < pvLength; i++) sb.append(' ').append(Move.notation(pv[i]));
+        }
+        send(sb.toString());
+    }
+
+    // The opponent played the expected move: the search goes on for the move's budget, counted from
+    // now, and its bestmove is then sent as usual
+    private void ponderHit() {
+        if (untilStop == null) return;
+        if (ponderBudget > 0) engine.startClock(ponderBudget);
+        ponderBudget = 0;
+        untilStop.countDown();
+    }
+
+    private void stopSearch() {
+        if (engine != null) engine.stop();
+        if (untilStop != null) untilStop.countDown();
+        waitForSearch();
+    }
+
+    // A search that waits for 'stop' is stopped, so a command sent without one cannot hang the loop
+    private void waitForSearch() {
+        if (searchThread == null) return;
+        if (untilStop != null && untilStop.getCount() > 0) {
+            stopSearch();
+            return;
+        }
+        try {
+            searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+        untilStop = null;
+    }
+
+    // Lines are written to the buffer and flushed once, so each message is a single write
+    private synchronized void send(String message) {
+        out.print(message);
+        out.print('\n');
+        out.flush();
+    }
+
+    private static int indexOf(String[] tokens, String token) {
+        for (int i = 0; i < tokens.length; i++) if (tokens[i].equals(token)) return i;
+        return -1;
+    }
+}
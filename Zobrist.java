@@ -0,0 +1,28 @@
+// Random keys for Zobrist hashing of positions. A position's key is the XOR of the keys of
+// every piece on its square, the side to move, the castling rights and the en-passant file.
+final class Zobrist {
+    private Zobrist() {}
+
+    public static final long[][] PIECES = new long[12][64];   // index: color * 6 + type
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EN_PASSANT_FILE = new long[8];
+    public static final long SIDE;   // XORed in when black is to move
+
+    // splitmix64 with a fixed seed, so keys are stable between runs
+    private static long state = 0x2545F4914F6CDD1DL;
+
+    private static long next() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static {
+        for (long[] keys : PIECES)
+            for (int sq = 0; sq < 64; sq++) keys[sq] = next();
+        for (int i = 1; i < 16; i++) CASTLING[i] = next();
+        for (int i = 0; i < 8; i++) EN_PASSANT_FILE[i] = next();
+        SIDE = next();
+    }
+}
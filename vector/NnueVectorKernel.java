@@ -0,0 +1,49 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD network kernel on the incubating Vector API. Kept out of the main build because it needs
+// the jdk.incubator.vector module at compile and run time; Nnue picks it up when it is present:
+//
+//   javac --add-modules jdk.incubator.vector -cp . -d . vector/NnueVectorKernel.java
+//   java --add-modules jdk.incubator.vector ChessMain ...
+final class NnueVectorKernel implements Nnue.Kernel {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;   // half as many lanes
+
+    @Override
+    public void add(short[] acc, short[] weights, int offset) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(acc.length); i < bound; i += SHORTS.length())
+            ShortVector.fromArray(SHORTS, acc, i).add(ShortVector.fromArray(SHORTS, weights, offset + i)).intoArray(acc, i);
+        for (; i < acc.length; i++) acc[i] += weights[offset + i];
+    }
+
+    @Override
+    public void subtract(short[] acc, short[] weights, int offset) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(acc.length); i < bound; i += SHORTS.length())
+            ShortVector.fromArray(SHORTS, acc, i).sub(ShortVector.fromArray(SHORTS, weights, offset + i)).intoArray(acc, i);
+        for (; i < acc.length; i++) acc[i] -= weights[offset + i];
+    }
+
+    @Override
+    public int dot(short[] acc, short[] weights, int offset) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = SHORTS.loopBound(acc.length); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, i).max((short) 0).min((short) Nnue.QA);
+            ShortVector w = ShortVector.fromArray(SHORTS, weights, offset + i);
+            // Products need 32 bits: widen each half of the lanes to ints
+            for (int part = 0; part < 2; part++) {
+                IntVector ai = (IntVector) a.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector wi = (IntVector) w.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(ai.mul(wi));
+            }
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < acc.length; i++) result += Math.min(Math.max(acc[i], 0), Nnue.QA) * weights[offset + i];
+        return result;
+    }
+}